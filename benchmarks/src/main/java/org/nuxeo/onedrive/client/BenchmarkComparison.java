@@ -0,0 +1,139 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}, usually the stored results of two versions, and exits
+ * with status 1 if a benchmark regressed by more than the threshold.
+ * <p>
+ * A benchmark only regresses if its confidence intervals, the score plus or minus its error, don't overlap either. A
+ * change beyond the threshold within the error of the runs is marked as noise and doesn't fail the comparison.
+ * <p>
+ * Usage: {@code BenchmarkComparison <baseline.json> <current.json> [threshold percent, 10 by default]}
+ */
+public class BenchmarkComparison {
+
+    private static final String PACKAGE = BenchmarkComparison.class.getPackage().getName() + '.';
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        boolean regressed = false;
+        System.out.println(String.format("%-60s %25s %25s %8s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result after = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println(String.format("%-60s %25s %25s %8s", entry.getKey(), "-", after, "new"));
+                continue;
+            }
+            double change = (after.score - before.score) / before.score * 100;
+            // Throughput is better when higher, times are better when lower
+            double improvement = after.higherIsBetter ? change : -change;
+            String flag = "";
+            if (improvement < -threshold) {
+                boolean overlap = after.score - after.error <= before.score + before.error
+                        && before.score - before.error <= after.score + after.error;
+                flag = overlap ? " noise" : " REGRESSION";
+                regressed |= !overlap;
+            }
+            System.out.println(String.format("%-60s %25s %25s %+7.1f%% %s%s", entry.getKey(), before, after, change,
+                    after.unit, flag));
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Result> read(String file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            for (JsonValue value : JsonValue.readFrom(reader).asArray()) {
+                JsonObject run = value.asObject();
+                String benchmark = run.get("benchmark").asString();
+                StringBuilder key = new StringBuilder(
+                        benchmark.startsWith(PACKAGE) ? benchmark.substring(PACKAGE.length()) : benchmark);
+                JsonValue params = run.get("params");
+                if (params != null) {
+                    for (JsonObject.Member param : params.asObject()) {
+                        key.append(' ').append(param.getName()).append('=').append(param.getValue().asString());
+                    }
+                }
+                JsonObject metric = run.get("primaryMetric").asObject();
+                results.put(key.toString(), new Result(metric.get("score").asDouble(), getError(metric),
+                        metric.get("scoreUnit").asString(), "thrpt".equals(run.get("mode").asString())));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the error of the score, 0 when JMH couldn't compute it from a single iteration.
+     */
+    private static double getError(JsonObject metric) {
+        JsonValue error = metric.get("scoreError");
+        if (error == null || !error.isNumber()) {
+            return 0;
+        }
+        double value = error.asDouble();
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    static final class Result {
+
+        final double score;
+
+        final double error;
+
+        final String unit;
+
+        final boolean higherIsBetter;
+
+        Result(double score, double error, String unit, boolean higherIsBetter) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f +/- %.3f", score, error);
+        }
+
+    }
+
+}
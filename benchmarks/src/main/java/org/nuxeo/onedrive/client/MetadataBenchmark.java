@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.eclipsesource.json.JsonObject;
+
+/**
+ * Builds {@link OneDriveFile.Metadata} from an item of a recorded page, with lazy metadata or not. Reading only the name
+ * measures the lazily decoded members being skipped, reading everything measures their decoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean lazy;
+
+    private OneDriveFile file;
+
+    private byte[] item;
+
+    private JsonObject json;
+
+    @Setup
+    public void setUp() throws IOException {
+        OneDriveBasicAPI api = new OneDriveBasicAPI("ACCESS_TOKEN");
+        api.setLazyMetadata(lazy);
+        file = new OneDriveFile(api, "ITEM");
+        JsonObject page = JsonObject.readFrom(PageParsingBenchmark.read("onedrive_children_page_1.json"));
+        json = page.get("value").asArray().get(0).asObject();
+        item = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String parseAndReadName() throws IOException {
+        JsonObject parsed = JsonObject.readFrom(
+                new InputStreamReader(new ByteArrayInputStream(item), StandardCharsets.UTF_8));
+        return file.new Metadata(parsed).getName();
+    }
+
+    @Benchmark
+    public String buildAndReadName() {
+        return file.new Metadata(json).getName();
+    }
+
+    @Benchmark
+    public void buildAndReadAll(Blackhole blackhole) {
+        OneDriveFile.Metadata metadata = file.new Metadata(json);
+        blackhole.consume(metadata.getName());
+        blackhole.consume(metadata.getSize());
+        blackhole.consume(metadata.getCreatedBy());
+        blackhole.consume(metadata.getCreatedDateTime());
+        blackhole.consume(metadata.getLastModifiedBy());
+        blackhole.consume(metadata.getLastModifiedDateTime());
+        blackhole.consume(metadata.getParentReference());
+        blackhole.consume(metadata.getThumbnailSet());
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Parses pages of children built from a recorded response, the way a streaming {@link OneDriveItemIterator} reads
+ * them, and compares it with parsing the whole page into a tree first.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageParsingBenchmark {
+
+    @Param({ "20", "200" })
+    public int pageSize;
+
+    private final OneDriveAPI api = new OneDriveBasicAPI("ACCESS_TOKEN");
+
+    private byte[] page;
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonObject recorded = JsonObject.readFrom(read("onedrive_children_page_1.json"));
+        JsonArray items = recorded.get("value").asArray();
+        JsonArray value = new JsonArray();
+        for (int i = 0; i < pageSize; i++) {
+            value.add(items.get(i % items.size()));
+        }
+        recorded.set("value", value);
+        page = recorded.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String read(String resource) throws IOException {
+        try (InputStream stream = PageParsingBenchmark.class.getResourceAsStream(resource)) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * Streams items one at a time, as {@link OneDriveItemIterator} does when streaming.
+     */
+    @Benchmark
+    public void iteratePage(Blackhole blackhole) throws IOException {
+        try (JsonPageReader reader = new JsonPageReader(new ByteArrayInputStream(page))) {
+            JsonObject json;
+            while ((json = reader.nextItem()) != null) {
+                blackhole.consume(OneDriveItemIterator.toMetadata(api, json).getName());
+            }
+        }
+    }
+
+    /**
+     * Parses the page into a tree before decoding its items, as the iterator did before pages were streamed.
+     */
+    @Benchmark
+    public void parsePageTree(Blackhole blackhole) throws IOException {
+        JsonObject json = JsonObject.readFrom(
+                new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8));
+        for (JsonValue item : json.get("value").asArray()) {
+            blackhole.consume(OneDriveItemIterator.toMetadata(api, item.asObject()).getName());
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Sends and reads bodies through requests to an in-process HTTP server, and copies them in memory for reference. The
+ * throughput in bytes per second is the operations per second times the size.
+ * <p>
+ * The byte at a time variants are the loops the client used before 3.6: request bodies were written one byte at a time,
+ * and response bodies only had a single byte {@code read()}, so callers read them one byte at a time.
+ * <p>
+ * The JDK HTTP server doesn't set {@code TCP_NODELAY} by default. The small response to an upload then waits for the
+ * delayed ACK of the client, about 40 ms, which caps uploads near 22 per second whatever their size. The fork enables
+ * it so that the client is measured, not the server.
+ * <p>
+ * Scores over the loopback vary much more from one JVM to the next than in-memory ones, hence more forks and
+ * iterations than the other suites.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 3, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+
+    @Param({ "65536", "4194304" })
+    public int size;
+
+    private byte[] content;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private OneDriveBasicAPI api;
+
+    private URL downloadURL;
+
+    private URL uploadURL;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = new byte[size];
+        new Random(0).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/download", exchange -> respond(exchange, content));
+        server.createContext("/upload", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                StreamCopier.copy(body, NullOutputStream.NULL_OUTPUT_STREAM);
+            }
+            respond(exchange, "{}".getBytes());
+        });
+        server.start();
+        String baseURL = "http://localhost:" + server.getAddress().getPort();
+        api = new OneDriveBasicAPI("ACCESS_TOKEN");
+        api.setRetryPolicy(OneDriveRetryPolicy.NONE);
+        downloadURL = new URL(baseURL + "/download");
+        uploadURL = new URL(baseURL + "/upload");
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+        exchange.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long download() throws Exception {
+        OneDriveRequest request = new OneDriveRequest(api, downloadURL, "GET");
+        try (InputStream body = request.send().getContent()) {
+            return StreamCopier.copy(body, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+    }
+
+    @Benchmark
+    public long downloadByteAtATime() throws Exception {
+        OneDriveRequest request = new OneDriveRequest(api, downloadURL, "GET");
+        try (InputStream body = request.send().getContent()) {
+            return copyByteAtATime(body, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+    }
+
+    @Benchmark
+    public int upload() throws Exception {
+        OneDriveRequest request = new OneDriveRequest(api, uploadURL, "PUT");
+        request.setBody(new ByteArrayInputStream(content), content.length);
+        OneDriveResponse response = request.send();
+        response.close();
+        return response.getResponseCode();
+    }
+
+    @Benchmark
+    public long copyInMemory() throws IOException {
+        return StreamCopier.copy(new ByteArrayInputStream(content), NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public long copyInMemoryByteAtATime() throws IOException {
+        return copyByteAtATime(new ByteArrayInputStream(content), NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    private static long copyByteAtATime(InputStream input, OutputStream output) throws IOException {
+        long count = 0;
+        int b;
+        while ((b = input.read()) != -1) {
+            output.write(b);
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds API urls with {@link URLTemplate} and {@link QueryStringBuilder}, with {@code String.format} as the former
+ * implementation for reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class URLBuildingBenchmark {
+
+    private static final String BASE_URL = "https://graph.microsoft.com/v1.0";
+
+    private static final String ID = "01YOWJ6CQSJ5S3PYEERFBLEDREVCLCBNPU";
+
+    private static final URLTemplate ITEM_URL = new URLTemplate("/drive/items/%s");
+
+    private static final URLTemplate CHILD_BY_PATH_URL = new URLTemplate("/drive/items/%s:/%s");
+
+    private final Set<OneDriveSelect> selects = EnumSet.of(OneDriveSelect.NAME, OneDriveSelect.SIZE,
+            OneDriveSelect.LAST_MODIFIED_DATE_TIME);
+
+    private final QueryStringBuilder query = new QueryStringBuilder().set("select",
+            OneDriveSelect.toParameters(selects)).set("expand", OneDriveExpand.THUMBNAILS);
+
+    @Benchmark
+    public URL buildItemURL() {
+        return ITEM_URL.build(BASE_URL, ID);
+    }
+
+    @Benchmark
+    public URL formatItemURL() throws MalformedURLException {
+        return new URL(String.format(BASE_URL + "/drive/items/%s", ID));
+    }
+
+    /**
+     * A path whose segments need encoding.
+     */
+    @Benchmark
+    public URL buildPathURL() {
+        return CHILD_BY_PATH_URL.build(BASE_URL, ID, "Documents/Reports 2024/Q1 r\u00e9sum\u00e9 #2.docx");
+    }
+
+    /**
+     * Builds the url of {@link OneDriveFile#getMetadata(Set, OneDriveExpand...)}, query string included.
+     */
+    @Benchmark
+    public URL buildMetadataURL() {
+        QueryStringBuilder query = new QueryStringBuilder().set("select", OneDriveSelect.toParameters(selects))
+                                                           .set("expand", OneDriveExpand.THUMBNAILS);
+        return ITEM_URL.build(BASE_URL, query, ID);
+    }
+
+    /**
+     * Builds an url with a query string already encoded.
+     */
+    @Benchmark
+    public URL buildWithQuery() {
+        return ITEM_URL.build(BASE_URL, query, ID);
+    }
+
+}
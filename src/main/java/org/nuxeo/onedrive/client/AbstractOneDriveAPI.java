@@ -18,6 +18,8 @@
  */
 package org.nuxeo.onedrive.client;
 
+import java.util.Objects;
+
 /**
  * @since 1.0
  */
@@ -25,6 +27,21 @@ abstract class AbstractOneDriveAPI implements OneDriveAPI {
 
     private final String accessToken;
 
+    private OneDriveTransport transport = OneDriveURLConnectionTransport.INSTANCE;
+
+    /** Not the shared default, so that the counters of the policy are those of this API. */
+    private OneDriveRetryPolicy retryPolicy = new OneDriveRetryPolicy();
+
+    private OneDriveRateLimiter rateLimiter;
+
+    private OneDriveResponseCache responseCache;
+
+    private OneDrivePathCache pathCache;
+
+    private OneDriveMetrics metrics = OneDriveMetrics.NONE;
+
+    private boolean lazyMetadata;
+
     public AbstractOneDriveAPI(String accessToken) {
         this.accessToken = accessToken;
     }
@@ -34,4 +51,112 @@ abstract class AbstractOneDriveAPI implements OneDriveAPI {
         return accessToken;
     }
 
+    @Override
+    public OneDriveTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport sending requests to the API, for instance a {@link OneDriveOkHttpTransport} to control the
+     * connection pool and use HTTP/2.
+     *
+     * @since 3.6
+     */
+    public void setTransport(OneDriveTransport transport) {
+        this.transport = Objects.requireNonNull(transport);
+    }
+
+    @Override
+    public OneDriveRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the policy retrying throttled requests, by default a {@link OneDriveRetryPolicy#OneDriveRetryPolicy()} of
+     * this API. {@link OneDriveRetryPolicy#NONE} disables retries.
+     *
+     * @since 3.6
+     */
+    public void setRetryPolicy(OneDriveRetryPolicy retryPolicy) {
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+    }
+
+    @Override
+    public OneDriveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the limiter spacing requests to the tenant, use {@link OneDriveRateLimiter#forTenant(String)} to share it
+     * with the other API instances of the tenant.
+     *
+     * @param rateLimiter the limiter, or null to send requests without waiting
+     * @since 3.6
+     */
+    public void setRateLimiter(OneDriveRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public OneDriveResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Sets the cache revalidating item metadata with their eTag, the cache must not be shared with API instances of
+     * other users.
+     *
+     * @param responseCache the cache, or null to always download metadata
+     * @since 3.6
+     */
+    public void setResponseCache(OneDriveResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public OneDrivePathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Sets the cache of item ids read by path, the cache must not be shared with API instances of other drives.
+     *
+     * @param pathCache the cache, or null to always resolve paths by the service
+     * @since 3.6
+     */
+    public void setPathCache(OneDrivePathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    @Override
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    /**
+     * Sets whether costly members of item metadata, such as dates, identity sets, parent references and thumbnail
+     * sets, are decoded on their first access, which saves their decoding to crawls reading only a few members. An
+     * invalid member is then reported by its getter instead of when the metadata is read, in both cases as a
+     * {@link OneDriveRuntimeException}.
+     *
+     * @since 3.6
+     */
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
+    @Override
+    public OneDriveMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics receiving the timings of requests, see {@link OneDriveInMemoryMetrics}.
+     *
+     * @since 3.6
+     */
+    public void setMetrics(OneDriveMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
 }
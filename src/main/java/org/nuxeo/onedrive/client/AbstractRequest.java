@@ -19,17 +19,17 @@
 package org.nuxeo.onedrive.client;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.ProtocolException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @since 1.0
@@ -48,14 +48,39 @@ public abstract class AbstractRequest<R extends AbstractResponse> {
 
     private URL url;
 
+    private OneDriveTransport transport;
+
+    private OneDriveRetryPolicy retryPolicy;
+
+    private OneDriveRateLimiter rateLimiter;
+
+    private OneDriveMetrics metrics;
+
+    /** The template of the url for metrics, the host unless the template is given, see {@link #setTemplate}. */
+    private String endpoint;
+
     private int timeout;
 
     private InputStream body;
 
-    private long bodyLength;
+    /** Length of body in bytes, or -1 if it is unknown. */
+    private long bodyLength = -1;
+
+    /** Position of a file body, to send it again. */
+    private long bodyPosition = -1;
 
     private int numRedirects;
 
+    private int retryCount;
+
+    /** When the first attempt started, waits and retries are part of the total time. */
+    private long sendStart;
+
+    private int lastResponseCode = -1;
+
+    /** Bytes of body written by all attempts, the length isn't known for chunked bodies. */
+    private long bytesSent;
+
     /**
      * Constructs an unauthenticated request.
      */
@@ -71,15 +96,95 @@ public abstract class AbstractRequest<R extends AbstractResponse> {
         this.url = Objects.requireNonNull(url);
         this.method = Objects.requireNonNull(method);
         this.headers = new ArrayList<>();
+        this.transport = api == null ? OneDriveURLConnectionTransport.INSTANCE : api.getTransport();
+        this.retryPolicy = api == null ? OneDriveRetryPolicy.DEFAULT : api.getRetryPolicy();
+        this.rateLimiter = api == null ? null : api.getRateLimiter();
+        this.metrics = api == null ? OneDriveMetrics.NONE : api.getMetrics();
+        this.endpoint = URLTemplate.getEndpoint(url);
 
         addHeader("Accept-Encoding", "gzip");
         addHeader("Accept-Charset", "utf-8");
     }
 
+    /**
+     * Sets the template the url of this request was built from, for metrics and events to group requests by endpoint.
+     */
+    void setTemplate(URLTemplate template) {
+        this.endpoint = template.getEndpoint();
+    }
+
     public void addHeader(String key, String value) {
         this.headers.add(new RequestHeader(key, value));
     }
 
+    /**
+     * Replaces the values of a header, for instance the default {@code Accept-Encoding}.
+     *
+     * @since 3.6
+     */
+    public void setHeader(String key, String value) {
+        this.headers.removeIf(header -> header.getKey().equalsIgnoreCase(key));
+        addHeader(key, value);
+    }
+
+    /**
+     * Sets the transport sending this request, by default the one of the API or the default transport for
+     * unauthenticated requests.
+     *
+     * @since 3.6
+     */
+    public void setTransport(OneDriveTransport transport) {
+        this.transport = Objects.requireNonNull(transport);
+    }
+
+    /**
+     * Sets the policy retrying this request when it is throttled, by default the one of the API.
+     *
+     * @since 3.6
+     */
+    public void setRetryPolicy(OneDriveRetryPolicy retryPolicy) {
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+    }
+
+    /**
+     * Takes the transport, retry policy, rate limiter and metrics of the given API, for unauthenticated requests
+     * derived from it.
+     */
+    void configure(OneDriveAPI api) {
+        setTransport(api.getTransport());
+        setRetryPolicy(api.getRetryPolicy());
+        setRateLimiter(api.getRateLimiter());
+        setMetrics(api.getMetrics());
+    }
+
+    /**
+     * Sets the limiter spacing this request with others to the same tenant, by default the one of the API.
+     *
+     * @param rateLimiter the limiter, or null to send the request without waiting
+     * @since 3.6
+     */
+    public void setRateLimiter(OneDriveRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the metrics receiving the timings of this request, by default the ones of the API.
+     *
+     * @since 3.6
+     */
+    public void setMetrics(OneDriveMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Returns how many times this request was retried after being throttled.
+     *
+     * @since 3.6
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
     public void setTimeout(int timeout) {
         this.timeout = timeout;
     }
@@ -89,6 +194,7 @@ public abstract class AbstractRequest<R extends AbstractResponse> {
     }
 
     protected void setBody(InputStream stream) {
+        this.bodyLength = -1;
         this.body = stream;
     }
 
@@ -103,57 +209,149 @@ public abstract class AbstractRequest<R extends AbstractResponse> {
         this.body = new ByteArrayInputStream(bytes);
     }
 
-    protected void writeBody(HttpURLConnection connection) throws OneDriveAPIException {
-        if (this.body == null) {
-            return;
+    public R send() throws OneDriveAPIException {
+        sendStart = System.nanoTime();
+        Object event = OneDriveEvents.beginRequest();
+        try {
+            return sendFollowingRedirects();
+        } finally {
+            OneDriveEvents.commitRequest(event, method, endpoint, lastResponseCode, bytesSent, numRedirects,
+                    retryCount);
         }
+    }
 
-        connection.setDoOutput(true);
-        try (OutputStream output = connection.getOutputStream()) {
-            int b = this.body.read();
-            while (b != -1) {
-                output.write(b);
-                b = this.body.read();
+    private R sendFollowingRedirects() throws OneDriveAPIException {
+        boolean replayable = markBody();
+        while (true) {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
             }
-        } catch (IOException e) {
-            throw new OneDriveAPIException("Couldn't connect to the OneDrive API due to a network error.", e);
-        }
-    }
+            long attemptStart = System.nanoTime();
+            OneDriveConnection connection = createConnection();
 
-    public R send() throws OneDriveAPIException {
-        HttpURLConnection connection = createConnection();
+            connection.addRequestProperty("User-Agent", USER_AGENT);
+            if (api != null) {
+                connection.addRequestProperty("Authorization", "Bearer " + api.getAccessToken());
+            }
 
-        connection.setRequestProperty("User-Agent", USER_AGENT);
-        if (api != null) {
-            connection.addRequestProperty("Authorization", "Bearer " + api.getAccessToken());
-        }
+            // We need to manually handle redirects by creating a new connection so that connection pooling happens
+            // correctly. There seems to be a bug in Oracle's Java implementation where automatically handled redirects
+            // will not keep the connection alive.
+            int responseCode;
+            Object upload = body == null ? null : OneDriveEvents.beginTransfer();
+            long sent;
+            try {
+                sent = connection.send(body, bodyLength);
+                metrics.onConnect(method, endpoint, sent, System.nanoTime() - attemptStart);
+                responseCode = connection.getResponseCode();
+            } catch (IOException e) {
+                lastResponseCode = -1;
+                metrics.onFirstByte(method, endpoint, -1, System.nanoTime() - attemptStart);
+                // The bytes written before the error aren't known
+                OneDriveEvents.commitTransfer(upload, OneDriveEvents.UPLOAD, method, endpoint, -1, -1);
+                throw new OneDriveAPIException("Couldn't connect to the OneDrive API due to a network error.", e);
+            }
+            lastResponseCode = responseCode;
+            bytesSent += sent;
+            OneDriveEvents.commitTransfer(upload, OneDriveEvents.UPLOAD, method, endpoint, responseCode, sent);
+            long firstByte = System.nanoTime();
+            metrics.onFirstByte(method, endpoint, responseCode, firstByte - attemptStart);
+            if (rateLimiter != null) {
+                rateLimiter.onResponse(responseCode,
+                        OneDriveRetryPolicy.parseRetryAfter(connection.getHeaderField("Retry-After")));
+            }
 
-        writeBody(connection);
+            if (isResponseRedirect(responseCode)) {
+                return handleRedirect(connection, replayable);
+            }
 
-        try {
-            connection.connect();
-        } catch (IOException e) {
-            throw new OneDriveAPIException("Couldn't connect to the OneDrive API due to a network error.", e);
+            if (OneDriveRetryPolicy.isThrottling(responseCode)) {
+                long delay = -1;
+                if (replayable && retryPolicy.isRetryable(method, responseCode)
+                        && retryCount < retryPolicy.getMaxRetries()) {
+                    delay = retryPolicy.getDelay(retryCount, connection.getHeaderField("Retry-After"));
+                }
+                if (delay >= 0) {
+                    metrics.onRetry(method, endpoint, responseCode);
+                    waitForRetry(connection, delay);
+                    continue;
+                }
+                retryPolicy.onExhausted();
+            }
+
+            R response;
+            try {
+                response = createResponse(connection);
+            } catch (OneDriveAPIException e) {
+                // Error responses are read and closed while they are created
+                long now = System.nanoTime();
+                metrics.onClose(method, endpoint, responseCode, 0, now - firstByte, now - sendStart);
+                throw e;
+            }
+            response.instrument(metrics, method, endpoint, firstByte, sendStart);
+            return response;
         }
+    }
 
-        // We need to manually handle redirects by creating a new HttpURLConnection so that connection pooling
-        // happens correctly. There seems to be a bug in Oracle's Java implementation where automatically handled
-        // redirects will not keep the connection alive.
-        int responseCode;
+    private void waitForRetry(OneDriveConnection connection, long delay) throws OneDriveAPIException {
+        // Read the error so that the connection goes back to the pool
+        AbstractResponse.readStream(connection.getErrorStream());
+        retryCount++;
+        retryPolicy.onRetry();
         try {
-            responseCode = connection.getResponseCode();
-        } catch (IOException e) {
-            throw new OneDriveAPIException("Couldn't connect to the OneDrive API due to a network error.", e);
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OneDriveAPIException("Interrupted while waiting to retry a throttled request.", e);
         }
+        resetBody();
+    }
 
-        if (isResponseRedirect(responseCode)) {
-            return handleRedirect(connection);
+    /**
+     * Remembers the start of body and returns whether it can be sent again.
+     */
+    private boolean markBody() throws OneDriveAPIException {
+        if (body == null) {
+            return true;
+        } else if (body instanceof ByteArrayInputStream) {
+            body.mark(0);
+            return true;
+        } else if (body instanceof FileInputStream) {
+            try {
+                bodyPosition = ((FileInputStream) body).getChannel().position();
+                return true;
+            } catch (IOException e) {
+                throw new OneDriveAPIException("Couldn't read the body of the request.", e);
+            }
         }
+        return false;
+    }
 
-        return createResponse(connection);
+    private void resetBody() throws OneDriveAPIException {
+        try {
+            if (body instanceof ByteArrayInputStream) {
+                body.reset();
+            } else if (body instanceof FileInputStream) {
+                ((FileInputStream) body).getChannel().position(bodyPosition);
+            }
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't read the body of the request.", e);
+        }
     }
 
-    private R handleRedirect(HttpURLConnection connection) throws OneDriveAPIException {
+    /**
+     * Sends the request on the given executor. The future completes once the response status is received, or
+     * exceptionally with the {@link OneDriveAPIException} thrown by {@link #send()}.
+     * <p>
+     * Connections are blocking, each request in flight holds a thread of the executor until its response arrives.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<R> sendAsync(Executor executor) {
+        return OneDriveAsync.supply(executor, this::send);
+    }
+
+    private R handleRedirect(OneDriveConnection connection, boolean replayable) throws OneDriveAPIException {
         if (this.numRedirects >= MAX_REDIRECTS) {
             throw new OneDriveAPIException("The OneDrive API responded with too many redirects.");
         }
@@ -172,34 +370,20 @@ public abstract class AbstractRequest<R extends AbstractResponse> {
         } catch (MalformedURLException e) {
             throw new OneDriveAPIException("The OneDrive API responded with an invalid redirect url.", e);
         }
-        return send();
+        if (replayable) {
+            resetBody();
+        }
+        return sendFollowingRedirects();
     }
 
-    private HttpURLConnection createConnection() throws OneDriveAPIException {
-        HttpURLConnection connection;
+    private OneDriveConnection createConnection() throws OneDriveAPIException {
+        OneDriveConnection connection;
         try {
-            connection = (HttpURLConnection) url.openConnection();
+            connection = transport.openConnection(url, method, timeout);
         } catch (IOException e) {
             throw new OneDriveAPIException("Couldn't connect to OneDrive API due to a network error.", e);
         }
 
-        try {
-            if(method.equals("PATCH")) {
-                connection.setRequestProperty("X-HTTP-Method-Override", "PATCH");
-                connection.setRequestMethod("POST");
-            } else {
-                connection.setRequestMethod(method);
-            }
-        } catch (ProtocolException e) {
-            throw new OneDriveAPIException("Couldn't connect to OneDrive API because method is not correct.", e);
-        }
-
-        connection.setConnectTimeout(timeout);
-        connection.setReadTimeout(timeout);
-
-        // Disable redirects on connection because we handle it manually
-        connection.setInstanceFollowRedirects(false);
-
         headers.forEach(header -> connection.addRequestProperty(header.getKey(), header.getValue()));
 
         return connection;
@@ -209,7 +393,16 @@ public abstract class AbstractRequest<R extends AbstractResponse> {
         return (responseCode == 301 || responseCode == 302);
     }
 
-    protected abstract R createResponse(HttpURLConnection connection) throws OneDriveAPIException;
+    /**
+     * Creates the response of a connection which has sent the request.
+     * <p>
+     * Since 3.6, this method replaces {@code createResponse(HttpURLConnection)} so that requests can be sent by any
+     * {@link OneDriveTransport}. Subclasses must implement it instead, with {@link OneDriveConnection#getInputStream()} and
+     * {@link OneDriveConnection#getHeaderField(String)} in place of the methods of the connection.
+     *
+     * @since 3.6
+     */
+    protected abstract R createResponse(OneDriveConnection connection) throws OneDriveAPIException;
 
     private final class RequestHeader {
 
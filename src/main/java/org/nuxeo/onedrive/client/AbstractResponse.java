@@ -22,6 +22,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
@@ -33,7 +34,7 @@ public abstract class AbstractResponse<C> implements Closeable {
 
     private static final int BUFFER_SIZE = 8192;
 
-    private final HttpURLConnection connection;
+    private final OneDriveConnection connection;
 
     private int responseCode;
 
@@ -44,10 +45,36 @@ public abstract class AbstractResponse<C> implements Closeable {
 
     private boolean closed;
 
+    private OneDriveMetrics metrics = OneDriveMetrics.NONE;
+
+    private String method;
+
+    private String endpoint;
+
+    private long firstByte;
+
+    private long sendStart;
+
+    /** Bytes of body read by the caller. */
+    private long received;
+
+    /** The flight recorder event of the body, or null if it isn't recorded. */
+    private Object transferEvent;
+
     /**
      * @param connection a connection which has already sent a request to the API
+     * @deprecated since 3.6, use {@link #AbstractResponse(OneDriveConnection)} instead
      */
+    @Deprecated
     public AbstractResponse(HttpURLConnection connection) throws OneDriveAPIException {
+        this(new OneDriveURLConnectionTransport.Connection(connection));
+    }
+
+    /**
+     * @param connection a connection which has already sent a request to the API
+     * @since 3.6
+     */
+    public AbstractResponse(OneDriveConnection connection) throws OneDriveAPIException {
         this.connection = connection;
 
         try {
@@ -68,6 +95,38 @@ public abstract class AbstractResponse<C> implements Closeable {
 
     public abstract C getContent() throws OneDriveAPIException;
 
+    /**
+     * Reports the end of this response to the given metrics and flight recorder when it is closed.
+     */
+    void instrument(OneDriveMetrics metrics, String method, String endpoint, long firstByte, long sendStart) {
+        this.metrics = metrics;
+        this.method = method;
+        this.endpoint = endpoint;
+        this.firstByte = firstByte;
+        this.sendStart = sendStart;
+        this.transferEvent = OneDriveEvents.beginTransfer();
+    }
+
+    private void onClosed() {
+        if (received > 0) {
+            OneDriveEvents.commitTransfer(transferEvent, OneDriveEvents.DOWNLOAD, method, endpoint, responseCode,
+                    received);
+        }
+        if (metrics != OneDriveMetrics.NONE) {
+            long now = System.nanoTime();
+            metrics.onClose(method, endpoint, responseCode, received, now - firstByte, now - sendStart);
+        }
+    }
+
+    /**
+     * Returns the value of the given response header, or null if absent.
+     *
+     * @since 3.6
+     */
+    public String getHeaderField(String name) {
+        return connection.getHeaderField(name);
+    }
+
     protected InputStream getBody() throws OneDriveAPIException {
         if (inputStream == null) {
             try {
@@ -110,8 +169,8 @@ public abstract class AbstractResponse<C> implements Closeable {
      * Returns a gzip input stream if the connection has gzip content encoding, else returns input stream.
      */
     private InputStream handleGZIPStream(InputStream stream) throws IOException {
-        if (stream != null && "gzip".equalsIgnoreCase(connection.getContentEncoding())) {
-            return new GZIPInputStream(stream);
+        if (stream != null && "gzip".equalsIgnoreCase(connection.getHeaderField("Content-Encoding"))) {
+            return new GZIPInputStream(stream, BUFFER_SIZE);
         }
         return stream;
     }
@@ -141,11 +200,25 @@ public abstract class AbstractResponse<C> implements Closeable {
             }
 
             closed = true;
+            onClosed();
         } catch (IOException e) {
             throw new OneDriveAPIException("Couldn't close the connection to OneDrive API due to a network error.", e);
         }
     }
 
+    /**
+     * Drops the connection without reading the remaining body, for large bodies which are no longer needed.
+     *
+     * @since 3.6
+     */
+    void disconnect() {
+        if (!closed) {
+            connection.disconnect();
+            closed = true;
+            onClosed();
+        }
+    }
+
     private static boolean isSuccess(int responseCode) {
         return responseCode >= 200 && responseCode < 300;
     }
@@ -179,7 +252,41 @@ public abstract class AbstractResponse<C> implements Closeable {
 
         @Override
         public int read() throws IOException {
-            return inputStream.read();
+            int b = inputStream.read();
+            if (b != -1) {
+                received++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = inputStream.read(b, off, len);
+            if (n > 0) {
+                received += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = inputStream.skip(n);
+            received += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return inputStream.available();
+        }
+
+        /**
+         * Copies the remaining body to the given stream, overrides {@code InputStream.transferTo} from Java 9.
+         */
+        public long transferTo(OutputStream out) throws IOException {
+            long n = StreamCopier.copy(inputStream, out);
+            received += n;
+            return n;
         }
 
         @Override
@@ -18,85 +18,337 @@
  */
 package org.nuxeo.onedrive.client;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 
 /**
+ * Iterates over the items of a collection, page after page.
+ * <p>
+ * Since 3.6, next pages can be prefetched in background while the current one is consumed, see
+ * {@link #setPrefetch(int, Executor)}, items can be read from the response stream one at a time, see
+ * {@link #setStreaming(boolean)}, and the iterator is closeable in order to release the current page and cancel
+ * prefetching when iteration is stopped early.
+ *
  * @since 1.0
  */
-class JsonObjectIterator implements Iterator<JsonObject> {
+class JsonObjectIterator implements Iterator<JsonObject>, Closeable {
 
     private final OneDriveAPI api;
 
+    /** The template the first page url was built from, or null if it wasn't built from one. */
+    private final URLTemplate template;
+
+    private final URL firstURL;
+
+    /** The endpoint of the first page, next pages have urls given by the service. */
+    private final String endpoint;
+
+    /** Index of the next page requested, pages may be requested from prefetching threads. */
+    private final AtomicInteger pageIndex = new AtomicInteger();
+
+    /** The flight recorder event of the page being streamed, or null if it isn't recorded. */
+    private Object pageEvent;
+
+    private int pageItems;
+
+    /** The url of next page, null if there are no more pages or once they are prefetched. */
     private URL url;
 
-    private boolean hasMorePages;
+    private JsonPageReader streamedPage;
+
+    private JsonObject nextObject;
+
+    private boolean streaming;
+
+    private int prefetch;
+
+    private Executor executor;
 
-    private Iterator<JsonValue> currentPage;
+    /** Pages being prefetched, in order, the last one of the collection completes with null. */
+    private final Deque<CompletableFuture<Page>> prefetchedPages = new ArrayDeque<>();
+
+    private Page currentPage;
+
+    private volatile boolean closed;
 
     public JsonObjectIterator(OneDriveAPI api, URL url) {
+        this(api, url, null);
+    }
+
+    /**
+     * Constructs an iterator whose first page url is built from the given template, for metrics.
+     */
+    JsonObjectIterator(OneDriveAPI api, URL url, URLTemplate template) {
         this.api = api;
         this.url = url;
-        this.hasMorePages = true;
+        this.template = template;
+        this.firstURL = url;
+        this.endpoint = template == null ? URLTemplate.getEndpoint(url) : template.getEndpoint();
+    }
+
+    /**
+     * Fetches up to the given number of pages ahead on the executor while the current page is consumed. Prefetched
+     * pages are read in memory as a whole, so the look-ahead bounds both the memory used and the requests wasted if
+     * iteration is abandoned. It applies from the next page to be requested.
+     *
+     * @since 3.6
+     */
+    public void setPrefetch(int pages, Executor executor) {
+        if (pages < 0) {
+            throw new IllegalArgumentException("Prefetched pages can't be negative.");
+        }
+        this.prefetch = pages;
+        this.executor = pages > 0 ? Objects.requireNonNull(executor) : executor;
+    }
+
+    /**
+     * Reads items from the response stream one at a time instead of reading each page as a whole. The connection is
+     * then held while a page is consumed, so the iterator must be closed when iteration is stopped early. It applies
+     * from the next page to be requested and has no effect on prefetched pages.
+     *
+     * @since 3.6
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
     }
 
     @Override
     public boolean hasNext() throws OneDriveRuntimeException {
-        if (currentPage != null && currentPage.hasNext()) {
-            return true;
-        } else if (hasMorePages) {
-            loadNextPage();
-            return currentPage != null && currentPage.hasNext();
+        while (nextObject == null) {
+            if (currentPage != null) {
+                nextObject = nextPageObject();
+            } else if (streamedPage != null) {
+                nextObject = nextStreamedObject();
+            } else if (!prefetchedPages.isEmpty()) {
+                takePrefetchedPage();
+            } else if (url == null) {
+                return false;
+            } else if (prefetch > 0) {
+                URL pageURL = url;
+                url = null;
+                prefetchedPages.add(OneDriveAsync.supply(executor, () -> fetchPage(pageURL, true)));
+            } else if (streaming) {
+                loadNextPage();
+            } else {
+                currentPage = fetchPage(url, false);
+                url = currentPage == null ? null : currentPage.next;
+            }
         }
-        return false;
+        return true;
     }
 
     @Override
     public JsonObject next() throws OneDriveRuntimeException {
         if (hasNext()) {
-            return currentPage.next().asObject();
+            JsonObject object = nextObject;
+            nextObject = null;
+            return object;
         }
         throw new NoSuchElementException();
     }
 
+    /**
+     * Returns the remaining items of the current page, the next page is loaded if the current one is consumed. Returns
+     * an empty list at the end of the collection.
+     *
+     * @since 3.6
+     */
+    List<JsonObject> nextPage() throws OneDriveRuntimeException {
+        List<JsonObject> items = new ArrayList<>();
+        if (!hasNext()) {
+            return items;
+        }
+        items.add(nextObject);
+        nextObject = null;
+        JsonObject object;
+        if (currentPage != null) {
+            while ((object = nextPageObject()) != null) {
+                items.add(object);
+            }
+        } else {
+            while (streamedPage != null && (object = nextStreamedObject()) != null) {
+                items.add(object);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Releases the page being read and cancels prefetching, next pages are not requested.
+     *
+     * @since 3.6
+     */
+    @Override
+    public void close() {
+        closed = true;
+        url = null;
+        nextObject = null;
+        currentPage = null;
+        prefetchedPages.forEach(page -> page.cancel(false));
+        prefetchedPages.clear();
+        closePage();
+    }
+
+    private void closePage() {
+        if (streamedPage != null) {
+            try {
+                streamedPage.close();
+            } catch (IOException e) {
+                // Nothing more will be read from the connection
+            }
+            streamedPage = null;
+        }
+    }
+
     private void loadNextPage() throws OneDriveRuntimeException {
+        pageEvent = OneDriveEvents.beginPage();
+        pageItems = 0;
         try {
             OneDriveJsonRequest request = new OneDriveJsonRequest(api, url, "GET");
+            if (template != null && url == firstURL) {
+                request.setTemplate(template);
+            }
             OneDriveJsonResponse response = request.send();
-            JsonObject json = response.getContent();
+            streamedPage = response.readPage();
+        } catch (OneDriveAPIException e) {
+            throw new OneDriveRuntimeException("An error occurred during connection with OneDrive API.", e);
+        }
+    }
+
+    private JsonObject nextStreamedObject() throws OneDriveRuntimeException {
+        JsonObject object;
+        try {
+            object = streamedPage.nextItem();
+        } catch (IOException e) {
+            close();
+            throw new OneDriveRuntimeException("Couldn't read the stream from OneDrive API.", e);
+        }
+        if (object != null) {
+            pageItems++;
+        } else {
+            OneDriveEvents.commitPage(pageEvent, endpoint, pageIndex.getAndIncrement(), pageItems, false);
+            pageEvent = null;
+            // Members of a page following its items, such as the next link, are only known once the items were read
+            JsonObject json = streamedPage.getPage();
+            closePage();
             onResponse(json);
+            url = getNextURL(json);
+        }
+        return object;
+    }
 
-            JsonValue values = json.get("value");
-            if (values.isNull()) {
-                currentPage = Collections.emptyIterator();
-            } else {
-                currentPage = values.asArray().iterator();
+    private JsonObject nextPageObject() {
+        if (currentPage.items.hasNext()) {
+            return currentPage.items.next();
+        }
+        JsonObject json = currentPage.json;
+        currentPage = null;
+        onResponse(json);
+        return null;
+    }
+
+    private void takePrefetchedPage() throws OneDriveRuntimeException {
+        CompletableFuture<Page> future = prefetchedPages.remove();
+        // Keep the look-ahead full, each page gives the url of the next one
+        CompletableFuture<Page> last = prefetchedPages.isEmpty() ? future : prefetchedPages.getLast();
+        while (prefetchedPages.size() < prefetch) {
+            last = last.thenCompose(page -> page == null || page.next == null ? CompletableFuture.completedFuture(null)
+                    : OneDriveAsync.supply(executor, () -> fetchPage(page.next, true)));
+            prefetchedPages.add(last);
+        }
+        try {
+            currentPage = future.join();
+        } catch (CompletionException e) {
+            close();
+            if (e.getCause() instanceof OneDriveRuntimeException) {
+                throw (OneDriveRuntimeException) e.getCause();
             }
+            throw new OneDriveRuntimeException("An error occurred during connection with OneDrive API.", e.getCause());
+        }
+        if (currentPage == null) {
+            prefetchedPages.clear();
+        }
+    }
 
-            JsonValue nextUrl = json.get("@odata.nextLink");
-            hasMorePages = nextUrl != null && !nextUrl.isNull();
-            if (hasMorePages) {
-                url = new URL(nextUrl.asString());
+    /**
+     * Reads a whole page, runs on the executor when the page is prefetched.
+     */
+    private Page fetchPage(URL pageURL, boolean prefetched) {
+        if (closed) {
+            return null;
+        }
+        Object event = OneDriveEvents.beginPage();
+        int index = pageIndex.getAndIncrement();
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, pageURL, "GET");
+        if (template != null && pageURL == firstURL) {
+            request.setTemplate(template);
+        }
+        try (JsonPageReader reader = request.send().readPage()) {
+            List<JsonObject> items = new ArrayList<>();
+            JsonObject item;
+            while ((item = reader.nextItem()) != null) {
+                items.add(item);
             }
+            OneDriveEvents.commitPage(event, endpoint, index, items.size(), prefetched);
+            return new Page(items, reader.getPage());
         } catch (OneDriveAPIException e) {
             throw new OneDriveRuntimeException("An error occurred during connection with OneDrive API.", e);
+        } catch (IOException e) {
+            throw new OneDriveRuntimeException("Couldn't read the stream from OneDrive API.", e);
+        }
+    }
+
+    private static URL getNextURL(JsonObject json) throws OneDriveRuntimeException {
+        JsonValue nextUrl = json.get("@odata.nextLink");
+        if (nextUrl == null || nextUrl.isNull()) {
+            return null;
+        }
+        try {
+            return new URL(nextUrl.asString());
         } catch (MalformedURLException e) {
-            hasMorePages = false;
             throw new OneDriveRuntimeException("Next url returned from OneDrive API is malformed.", e);
         }
     }
 
     /**
+     * Called with the members of each page other than its items, once the items of the page were read.
+     *
      * @since 1.1
      */
     protected void onResponse(JsonObject response) {
         // Hook method
     }
 
+    private static class Page {
+
+        final Iterator<JsonObject> items;
+
+        final JsonObject json;
+
+        final URL next;
+
+        Page(List<JsonObject> items, JsonObject json) {
+            this.items = items.iterator();
+            this.json = json;
+            this.next = getNextURL(json);
+        }
+
+    }
+
 }
@@ -0,0 +1,263 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.ParseException;
+
+/**
+ * Reads a page of a collection directly from the response stream. Items of the {@code value} array are parsed one
+ * at a time when they are requested, so neither the body nor the whole page are held in memory. The reader only
+ * finds where each value ends, values are parsed by minimal-json.
+ * <p>
+ * Other members of the page, such as {@code @odata.nextLink}, are gathered in {@link #getPage()} which is complete
+ * once all items were read.
+ *
+ * @since 3.6
+ */
+class JsonPageReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String ITEMS = "value";
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    /** Offset of current character in the stream, for error messages. */
+    private long offset = -1;
+
+    /** Current character, or -1 at the end of the stream. */
+    private int current;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private final JsonObject page = new JsonObject();
+
+    private boolean inItems;
+
+    private boolean firstItem;
+
+    /**
+     * Reads the members of the page until its items, the stream is decoded as UTF-8.
+     */
+    JsonPageReader(InputStream stream) throws IOException {
+        reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        read();
+        skipWhiteSpace();
+        expect('{');
+        readMembers(true);
+    }
+
+    /**
+     * Returns the next item of the page, or null once all items were read.
+     */
+    JsonObject nextItem() throws IOException {
+        if (!inItems) {
+            return null;
+        }
+        skipWhiteSpace();
+        if (current == ']') {
+            read();
+            inItems = false;
+            readMembers(false);
+            return null;
+        }
+        if (!firstItem) {
+            expect(',');
+            skipWhiteSpace();
+        }
+        firstItem = false;
+        JsonValue item = readValue();
+        if (!item.isObject()) {
+            throw error("Expected an object");
+        }
+        return item.asObject();
+    }
+
+    /**
+     * Returns the members of the page other than its items, members after the items are only present once
+     * {@link #nextItem()} returned null.
+     */
+    JsonObject getPage() {
+        return page;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads members of the top level object until the items array is entered or the object ends.
+     */
+    private void readMembers(boolean first) throws IOException {
+        while (true) {
+            skipWhiteSpace();
+            if (current == '}') {
+                read();
+                return;
+            }
+            if (!first) {
+                expect(',');
+                skipWhiteSpace();
+            }
+            first = false;
+            String name = readName();
+            if (ITEMS.equals(name) && current == '[') {
+                read();
+                inItems = true;
+                firstItem = true;
+                return;
+            }
+            page.add(name, readValue());
+        }
+    }
+
+    private String readName() throws IOException {
+        text.setLength(0);
+        scanString();
+        String name = parse().asString();
+        skipWhiteSpace();
+        expect(':');
+        skipWhiteSpace();
+        return name;
+    }
+
+    private JsonValue readValue() throws IOException {
+        text.setLength(0);
+        scanValue();
+        return parse();
+    }
+
+    private JsonValue parse() throws IOException {
+        try {
+            return JsonValue.readFrom(text.toString());
+        } catch (ParseException e) {
+            throw error("Expected a valid value (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Gathers the text of the value starting at the current character. Only strings and brackets are tracked in
+     * order to find where the value ends, the text is checked when it is parsed.
+     */
+    private void scanValue() throws IOException {
+        int depth = 0;
+        while (true) {
+            if (current == -1) {
+                throw error("Unexpected end of input");
+            } else if (current == '"') {
+                scanString();
+                continue;
+            } else if (current == '{' || current == '[') {
+                depth++;
+            } else if (current == '}' || current == ']') {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            } else if (depth == 0 && (current == ',' || isWhiteSpace())) {
+                return;
+            }
+            text.append((char) current);
+            read();
+        }
+    }
+
+    private void scanString() throws IOException {
+        expect('"');
+        text.append('"');
+        while (current != '"') {
+            if (current == -1) {
+                throw error("Unexpected end of input");
+            }
+            if (current == '\\') {
+                text.append('\\');
+                read();
+                if (current == -1) {
+                    throw error("Unexpected end of input");
+                }
+            }
+            text.append((char) current);
+            read();
+        }
+        read();
+        text.append('"');
+    }
+
+    private void skipWhiteSpace() throws IOException {
+        while (isWhiteSpace()) {
+            read();
+        }
+    }
+
+    private boolean isWhiteSpace() {
+        return current == ' ' || current == '\t' || current == '\n' || current == '\r';
+    }
+
+    private boolean readIf(char c) throws IOException {
+        if (current != c) {
+            return false;
+        }
+        read();
+        return true;
+    }
+
+    private void expect(char c) throws IOException {
+        if (!readIf(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private void read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit == -1) {
+                limit = 0;
+                if (current != -1) {
+                    offset++;
+                    current = -1;
+                }
+                return;
+            }
+        }
+        current = buffer[position++];
+        offset++;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at offset " + offset + " of JSON response.");
+    }
+
+}
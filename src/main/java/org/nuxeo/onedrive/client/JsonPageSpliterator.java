@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.eclipsesource.json.JsonObject;
+
+/**
+ * Splits a collection at page boundaries: a split takes the remaining items of the current page, which are already
+ * on hand, and leaves the next pages to this spliterator. The split parts know their exact size.
+ * <p>
+ * The collection itself is not {@link Spliterator#SIZED}, even when the number of children of a folder is known. The
+ * count is a snapshot which goes stale as soon as items are added or removed during the listing, while a sized
+ * spliterator must return exactly the reported number of items. The count is only used as estimate.
+ *
+ * @since 3.6
+ */
+class JsonPageSpliterator<T> implements Spliterator<T> {
+
+    private static final int CHARACTERISTICS = ORDERED | NONNULL;
+
+    private final JsonObjectIterator iterator;
+
+    private final Function<JsonObject, T> mapper;
+
+    private long estimate;
+
+    JsonPageSpliterator(JsonObjectIterator iterator, Function<JsonObject, T> mapper, long estimate) {
+        this.iterator = iterator;
+        this.mapper = mapper;
+        this.estimate = estimate;
+    }
+
+    /**
+     * Returns a sequential stream over the collection, closing the stream releases the page being read.
+     *
+     * @param estimate the expected number of items, or {@link Long#MAX_VALUE} if unknown
+     */
+    static <T> Stream<T> stream(JsonObjectIterator iterator, Function<JsonObject, T> mapper, long estimate) {
+        return StreamSupport.stream(new JsonPageSpliterator<>(iterator, mapper, estimate), false)
+                            .onClose(iterator::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (!iterator.hasNext()) {
+            estimate = 0;
+            return false;
+        }
+        action.accept(mapper.apply(iterator.next()));
+        consumed(1);
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        List<JsonObject> page = iterator.nextPage();
+        if (page.isEmpty()) {
+            estimate = 0;
+            return null;
+        }
+        consumed(page.size());
+        Object[] items = new Object[page.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = mapper.apply(page.get(i));
+        }
+        return Spliterators.spliterator(items, CHARACTERISTICS | IMMUTABLE);
+    }
+
+    private void consumed(int count) {
+        if (estimate != Long.MAX_VALUE) {
+            // The estimate may be exceeded if items were added meanwhile
+            estimate = Math.max(1, estimate - count);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+}
@@ -36,4 +36,69 @@ public interface OneDriveAPI {
 
     String getAccessToken();
 
+    /**
+     * Returns the transport sending requests to the API.
+     *
+     * @since 3.6
+     */
+    default OneDriveTransport getTransport() {
+        return OneDriveURLConnectionTransport.INSTANCE;
+    }
+
+    /**
+     * Returns the policy retrying throttled requests, by default {@link OneDriveRetryPolicy#DEFAULT} whose counters
+     * are shared.
+     *
+     * @since 3.6
+     */
+    default OneDriveRetryPolicy getRetryPolicy() {
+        return OneDriveRetryPolicy.DEFAULT;
+    }
+
+    /**
+     * Returns the limiter spacing requests to the tenant, or null if requests are not limited.
+     *
+     * @since 3.6
+     */
+    default OneDriveRateLimiter getRateLimiter() {
+        return null;
+    }
+
+    /**
+     * Returns the cache revalidating item metadata with their eTag, or null if metadata are not cached.
+     *
+     * @since 3.6
+     */
+    default OneDriveResponseCache getResponseCache() {
+        return null;
+    }
+
+    /**
+     * Returns the cache of item ids read by path, or null if paths are always resolved by the service.
+     *
+     * @since 3.6
+     */
+    default OneDrivePathCache getPathCache() {
+        return null;
+    }
+
+    /**
+     * Returns whether costly members of item metadata, such as dates and nested objects, are decoded on their first
+     * access instead of when the metadata is read.
+     *
+     * @since 3.6
+     */
+    default boolean isLazyMetadata() {
+        return false;
+    }
+
+    /**
+     * Returns the metrics receiving the timings of requests.
+     *
+     * @since 3.6
+     */
+    default OneDriveMetrics getMetrics() {
+        return OneDriveMetrics.NONE;
+    }
+
 }
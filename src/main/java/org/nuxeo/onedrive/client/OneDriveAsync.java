@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs blocking calls to the API on an executor, behind the asynchronous methods of requests and resources.
+ *
+ * @since 3.6
+ */
+final class OneDriveAsync {
+
+    private OneDriveAsync() {
+        // Utility class
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+
+        T call() throws IOException;
+
+    }
+
+    /**
+     * Returns a future completed with the result of call, or exceptionally with the exception it throws, including
+     * the rejection of the task by the executor.
+     */
+    static <T> CompletableFuture<T> supply(Executor executor, Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    // Cancelled while queued
+                    return;
+                }
+                try {
+                    future.complete(call.call());
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.ParseException;
+
+/**
+ * Groups item operations into JSON batches, see https://docs.microsoft.com/en-us/graph/json-batching.
+ * <p>
+ * Operations are queued and return a future which is completed by {@link #execute()}, with the same metadata type as
+ * the matching method of resources, or exceptionally with a {@link OneDriveAPIException} carrying the status and body
+ * of the failed operation. Operations are sent by batches of at most {@link #MAX_REQUESTS}. An operation and the
+ * operations it depends on are always sent in the same batch, as required by the service.
+ * <p>
+ * A batch is not thread safe, it can be reused once executed.
+ *
+ * @since 3.6
+ */
+public class OneDriveBatch {
+
+    /** The maximum number of operations in a single batch request. */
+    public static final int MAX_REQUESTS = 20;
+
+    private static final String BATCH_PATH = "/$batch";
+
+    private final OneDriveAPI api;
+
+    private final String serviceRoot;
+
+    private final List<Operation<?>> operations = new ArrayList<>();
+
+    private final Map<CompletableFuture<?>, Operation<?>> operationsByFuture = new IdentityHashMap<>();
+
+    public OneDriveBatch(OneDriveAPI api) {
+        this.api = Objects.requireNonNull(api);
+        this.serviceRoot = getServiceRoot(api.getBaseURL());
+    }
+
+    /**
+     * Returns the root of the service up to its version, operation urls are relative to it.
+     */
+    static String getServiceRoot(String baseURL) {
+        try {
+            URL url = new URL(baseURL);
+            String path = url.getPath();
+            int slash = path.indexOf('/', 1);
+            String version = slash == -1 ? path : path.substring(0, slash);
+            return new URL(url.getProtocol(), url.getHost(), url.getPort(), version).toString();
+        } catch (MalformedURLException e) {
+            throw new OneDriveRuntimeException("Base url of OneDrive API is malformed.", e);
+        }
+    }
+
+    public CompletableFuture<OneDriveFile.Metadata> getMetadata(OneDriveFile file, OneDriveExpand... expands) {
+        return add("GET", file.getMetadataURL(expands), null, json -> file.new Metadata(json));
+    }
+
+    public CompletableFuture<OneDriveFolder.Metadata> getMetadata(OneDriveFolder folder,
+            OneDriveExpand... expands) {
+        return add("GET", folder.getMetadataURL(expands), null, json -> folder.new Metadata(json));
+    }
+
+    /**
+     * Queues the creation of a folder, see {@link OneDriveFolder#createFolder(boolean, String)}.
+     */
+    public CompletableFuture<OneDriveFolder.Metadata> createFolder(OneDriveFolder parent, boolean isRoot,
+            String newFolder) {
+        return add("POST", parent.getChildrenURL(isRoot), OneDriveFolder.newFolderBody(newFolder),
+                json -> parent.new Metadata(json));
+    }
+
+    public CompletableFuture<Void> deleteItem(OneDriveItem item) {
+        return add("DELETE", item.getItemURL(), null, json -> {
+            item.invalidatePaths();
+            return null;
+        });
+    }
+
+    /**
+     * Queues an operation on the API.
+     *
+     * @param url the url of the operation, built from the base url of the API
+     * @param body the JSON body of the operation, or null
+     * @param parser builds the result from the JSON body of the response, which is null if the response has none
+     */
+    public <T> CompletableFuture<T> add(String method, URL url, JsonObject body, Function<JsonObject, T> parser) {
+        String absoluteURL = url.toString();
+        if (!absoluteURL.startsWith(serviceRoot)) {
+            throw new IllegalArgumentException("Operation url " + url + " is not below " + serviceRoot);
+        }
+        Operation<T> operation = new Operation<>(operations.size(), method,
+                absoluteURL.substring(serviceRoot.length()), body, parser);
+        operations.add(operation);
+        operationsByFuture.put(operation.future, operation);
+        return operation.future;
+    }
+
+    /**
+     * Makes an operation wait for the success of other operations of this batch, it fails with status 424 if one of
+     * them fails. Dependent operations must fit together in a single batch.
+     */
+    public void dependsOn(CompletableFuture<?> dependent, CompletableFuture<?>... prerequisites) {
+        Operation<?> operation = getOperation(dependent);
+        List<Operation<?>> prerequisiteOperations = new ArrayList<>();
+        List<Operation<?>> groups = new ArrayList<>(Arrays.asList(operation.getGroup()));
+        int groupSize = operation.getGroup().groupSize;
+        for (CompletableFuture<?> prerequisite : prerequisites) {
+            Operation<?> prerequisiteOperation = getOperation(prerequisite);
+            if (prerequisiteOperation.index >= operation.index) {
+                throw new IllegalArgumentException("An operation can only depend on operations queued before it.");
+            }
+            prerequisiteOperations.add(prerequisiteOperation);
+            Operation<?> group = prerequisiteOperation.getGroup();
+            if (!groups.contains(group)) {
+                groups.add(group);
+                groupSize += group.groupSize;
+            }
+        }
+        if (groupSize > MAX_REQUESTS) {
+            throw new IllegalArgumentException(
+                    "Operations depending on each other must fit in a batch of " + MAX_REQUESTS + " operations.");
+        }
+        for (Operation<?> prerequisiteOperation : prerequisiteOperations) {
+            operation.dependsOn.add(prerequisiteOperation);
+            operation.merge(prerequisiteOperation);
+        }
+    }
+
+    private Operation<?> getOperation(CompletableFuture<?> future) {
+        Operation<?> operation = operationsByFuture.get(future);
+        if (operation == null) {
+            throw new IllegalArgumentException("The future doesn't belong to an operation of this batch.");
+        }
+        return operation;
+    }
+
+    /**
+     * Returns the number of queued operations.
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Sends the queued operations and completes their futures. Failures of single operations don't make this method
+     * fail, only failures of a whole batch request do: operations which were not sent are then completed with the
+     * same exception.
+     */
+    public void execute() throws OneDriveAPIException {
+        List<List<Operation<?>>> batches = split();
+        operations.clear();
+        operationsByFuture.clear();
+        for (int i = 0; i < batches.size(); i++) {
+            try {
+                send(batches.get(i));
+            } catch (OneDriveAPIException | RuntimeException e) {
+                for (List<Operation<?>> batch : batches.subList(i, batches.size())) {
+                    batch.forEach(operation -> operation.future.completeExceptionally(e));
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Splits operations into batches, keeping groups of dependent operations together. Each group goes to the first
+     * batch with room left, operations keep their queue order within a batch.
+     */
+    private List<List<Operation<?>>> split() {
+        Map<Operation<?>, List<Operation<?>>> groups = new LinkedHashMap<>();
+        for (Operation<?> operation : operations) {
+            groups.computeIfAbsent(operation.getGroup(), root -> new ArrayList<>()).add(operation);
+        }
+        List<List<Operation<?>>> batches = new ArrayList<>();
+        for (List<Operation<?>> group : groups.values()) {
+            List<Operation<?>> target = null;
+            for (List<Operation<?>> batch : batches) {
+                if (batch.size() + group.size() <= MAX_REQUESTS) {
+                    target = batch;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new ArrayList<>();
+                batches.add(target);
+            }
+            target.addAll(group);
+        }
+        batches.forEach(batch -> batch.sort((o1, o2) -> Integer.compare(o1.index, o2.index)));
+        return batches;
+    }
+
+    private void send(List<Operation<?>> batch) throws OneDriveAPIException {
+        JsonArray requests = new JsonArray();
+        Map<String, Operation<?>> operationsById = new LinkedHashMap<>();
+        for (Operation<?> operation : batch) {
+            requests.add(operation.toJson());
+            operationsById.put(operation.getId(), operation);
+        }
+        URL url;
+        try {
+            url = new URL(serviceRoot + BATCH_PATH);
+        } catch (MalformedURLException e) {
+            throw new OneDriveRuntimeException("Base url of OneDrive API is malformed.", e);
+        }
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, url, "POST");
+        request.setBody(new JsonObject().add("requests", requests));
+        OneDriveJsonResponse response = request.send();
+        JsonValue responses = response.getContent().get("responses");
+        if (responses != null) {
+            // Responses don't come in the order of requests
+            for (JsonValue value : responses.asArray()) {
+                JsonObject json = value.asObject();
+                Operation<?> operation = operationsById.remove(json.get("id").asString());
+                if (operation != null) {
+                    operation.complete(json);
+                }
+            }
+        }
+        operationsById.values().forEach(operation -> operation.future.completeExceptionally(
+                new OneDriveAPIException("The batch response has no response for the operation.")));
+    }
+
+    private static final class Operation<T> {
+
+        private final int index;
+
+        private final String method;
+
+        private final String url;
+
+        private final JsonObject body;
+
+        private final Function<JsonObject, T> parser;
+
+        private final List<Operation<?>> dependsOn = new ArrayList<>();
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        /** Union-find of dependent operations, the first queued operation of a group represents it. */
+        private Operation<?> group = this;
+
+        /** Size of the group, only maintained on the representative. */
+        private int groupSize = 1;
+
+        private Operation(int index, String method, String url, JsonObject body, Function<JsonObject, T> parser) {
+            this.index = index;
+            this.method = Objects.requireNonNull(method);
+            this.url = url;
+            this.body = body;
+            this.parser = Objects.requireNonNull(parser);
+        }
+
+        private Operation<?> getGroup() {
+            Operation<?> representative = this;
+            while (representative.group != representative) {
+                representative.group = representative.group.group;
+                representative = representative.group;
+            }
+            return representative;
+        }
+
+        private void merge(Operation<?> other) {
+            Operation<?> representative = getGroup();
+            Operation<?> otherRepresentative = other.getGroup();
+            if (representative == otherRepresentative) {
+                return;
+            }
+            if (otherRepresentative.index < representative.index) {
+                Operation<?> swap = representative;
+                representative = otherRepresentative;
+                otherRepresentative = swap;
+            }
+            otherRepresentative.group = representative;
+            representative.groupSize += otherRepresentative.groupSize;
+        }
+
+        private String getId() {
+            return String.valueOf(index + 1);
+        }
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject().add("id", getId()).add("method", method).add("url", url);
+            if (body != null) {
+                json.add("body", body);
+                json.add("headers", new JsonObject().add("Content-Type", "application/json"));
+            }
+            if (!dependsOn.isEmpty()) {
+                JsonArray ids = new JsonArray();
+                dependsOn.forEach(prerequisite -> ids.add(prerequisite.getId()));
+                json.add("dependsOn", ids);
+            }
+            return json;
+        }
+
+        private void complete(JsonObject response) {
+            int status = response.get("status").asInt();
+            JsonValue body = response.get("body");
+            if (status < 200 || status >= 300) {
+                future.completeExceptionally(new OneDriveAPIException("The API returned an error code: " + status,
+                        status, body == null ? null : body.toString()));
+                return;
+            }
+            try {
+                future.complete(parser.apply(body == null || !body.isObject() ? null : body.asObject()));
+            } catch (ParseException | OneDriveRuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
+}
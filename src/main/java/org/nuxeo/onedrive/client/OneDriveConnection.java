@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A single request/response exchange opened by a {@link OneDriveTransport}.
+ * <p>
+ * Headers are added first, then {@link #send(InputStream, long)} writes the request. Response status, headers and
+ * body are available after it.
+ *
+ * @since 3.6
+ */
+public interface OneDriveConnection {
+
+    void addRequestProperty(String key, String value);
+
+    /**
+     * Sends the request and waits for the response status and headers.
+     *
+     * @param body the request body, or null if the request has none, it is not closed
+     * @param length the length of body, or -1 if it is unknown
+     * @return the number of body bytes written, chunked bodies included
+     */
+    long send(InputStream body, long length) throws IOException;
+
+    int getResponseCode() throws IOException;
+
+    /**
+     * Returns the value of the given response header, or null if absent.
+     */
+    String getHeaderField(String name);
+
+    /**
+     * Returns the body of a successful response.
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * Returns the body of an error response, or null if there's none.
+     */
+    InputStream getErrorStream();
+
+    /**
+     * Releases the connection without reading the remaining body, the underlying socket is not reused.
+     */
+    void disconnect();
+
+}
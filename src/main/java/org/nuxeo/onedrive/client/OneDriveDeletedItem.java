@@ -0,0 +1,57 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import com.eclipsesource.json.JsonObject;
+
+/**
+ * An item the delta reported as deleted without telling whether it was a file or a folder. Only its id is known.
+ *
+ * @since 3.6
+ */
+class OneDriveDeletedItem extends OneDriveItem {
+
+    OneDriveDeletedItem(OneDriveAPI api, String id) {
+        super(api, id);
+    }
+
+    @Override
+    public Metadata getMetadata(OneDriveExpand... expand) throws OneDriveAPIException {
+        throw new OneDriveAPIException("The item " + getId() + " was deleted.");
+    }
+
+    public class Metadata extends OneDriveItem.Metadata {
+
+        public Metadata(JsonObject json) {
+            super(json);
+        }
+
+        @Override
+        public OneDriveDeletedItem getResource() {
+            return OneDriveDeletedItem.this;
+        }
+
+        @Override
+        public boolean isDeleted() {
+            return true;
+        }
+
+    }
+
+}
@@ -34,6 +34,10 @@ public class OneDriveDeltaItemIterator extends OneDriveItemIterator {
         super(api, url);
     }
 
+    OneDriveDeltaItemIterator(OneDriveAPI api, URL url, URLTemplate template) {
+        super(api, url, template);
+    }
+
     public String getDeltaLink() {
         return deltaLink;
     }
@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The local side of a {@link OneDriveDeltaSync}, it keeps the state built from the changes and the link to continue
+ * from.
+ *
+ * @since 3.6
+ */
+public interface OneDriveDeltaStore {
+
+    /**
+     * Returns the last committed link, or null to start with a full enumeration.
+     */
+    String getLink() throws IOException;
+
+    /**
+     * Applies a batch of changes and stores the given link in the same transaction, so that a crash either loses both
+     * or none of them. Changes include deleted items, see {@link OneDriveItem.Metadata#isDeleted()}.
+     *
+     * @param changes the changes of one page, in the order of the service
+     * @param link the link to continue from once the changes are applied
+     * @param complete whether the round is complete, the link is then a delta link which gives the next changes
+     */
+    void commit(List<OneDriveItem.Metadata> changes, String link, boolean complete) throws IOException;
+
+    /**
+     * Called when the service can no longer give changes from the committed link. A full enumeration follows: items
+     * of the store which are not part of it until the next complete commit are deleted on the service.
+     */
+    void resync() throws IOException;
+
+}
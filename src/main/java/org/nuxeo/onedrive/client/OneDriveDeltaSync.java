@@ -0,0 +1,225 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Keeps a {@link OneDriveDeltaStore} in sync with a folder tree through delta rounds, see
+ * https://dev.onedrive.com/items/view_delta.htm.
+ * <p>
+ * Each page of changes is committed to the store together with the link of the next page, or with the delta link at
+ * the end of a round. A round interrupted by a crash or an error therefore continues from the last committed page,
+ * and a round only costs requests for the changes since the previous one. Changed items are also removed from the
+ * {@link OneDrivePathCache} of the API, if any.
+ * <p>
+ * When the service answers {@code 410 Gone} because the link expired, the store is told to resync and a full
+ * enumeration starts over.
+ *
+ * @since 3.6
+ */
+public class OneDriveDeltaSync {
+
+    private static final int GONE = 410;
+
+    private final OneDriveFolder folder;
+
+    private final OneDriveDeltaStore store;
+
+    private Set<OneDriveSelect> selects;
+
+    private Consumer<OneDriveAPIException> errorHandler = e -> {
+        // Next round continues from the last committed link
+    };
+
+    public OneDriveDeltaSync(OneDriveFolder folder, OneDriveDeltaStore store) {
+        this.folder = Objects.requireNonNull(folder);
+        this.store = Objects.requireNonNull(store);
+    }
+
+    /**
+     * Sets the properties of changed items, see {@link OneDriveSelect}. The selection is kept by the committed links,
+     * it only applies to enumerations starting from scratch.
+     */
+    public void setSelects(Set<OneDriveSelect> selects) {
+        this.selects = selects;
+    }
+
+    /**
+     * Sets the handler of errors of rounds run by {@link #start(ScheduledExecutorService, long, TimeUnit)}.
+     */
+    public void setErrorHandler(Consumer<OneDriveAPIException> errorHandler) {
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+    }
+
+    /**
+     * Runs rounds with the given delay between the end of a round and the start of the next one, until the returned
+     * future is cancelled. Errors are passed to the error handler and don't stop next rounds, runtime exceptions are
+     * passed wrapped in an {@link OneDriveAPIException}.
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService executor, long delay, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (OneDriveAPIException e) {
+                errorHandler.accept(e);
+            } catch (RuntimeException e) {
+                // An exception escaping the task would cancel next rounds
+                errorHandler.accept(e.getCause() instanceof OneDriveAPIException ? (OneDriveAPIException) e.getCause()
+                        : new OneDriveAPIException("The delta round failed.", e));
+            }
+        }, 0, delay, unit);
+    }
+
+    /**
+     * Runs a round: applies changes page after page until the service gives a delta link.
+     *
+     * @return the number of changes applied
+     */
+    public synchronized long sync() throws OneDriveAPIException {
+        try {
+            URL link = getLink();
+            if (link != null) {
+                return syncFrom(link, null);
+            }
+            return syncFrom(folder.getDeltaURL(selects), folder.getDeltaTemplate());
+        } catch (OneDriveAPIException e) {
+            if (e.getResponseCode() != GONE) {
+                throw e;
+            }
+        }
+        try {
+            store.resync();
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't reset the delta store.", e);
+        }
+        return syncFrom(folder.getDeltaURL(selects), folder.getDeltaTemplate());
+    }
+
+    /**
+     * Returns the link stored by the last round, or null if there is none.
+     */
+    private URL getLink() throws OneDriveAPIException {
+        String link;
+        try {
+            link = store.getLink();
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't read the link of the delta store.", e);
+        }
+        if (link == null) {
+            return null;
+        }
+        try {
+            return new URL(link);
+        } catch (MalformedURLException e) {
+            throw new OneDriveAPIException("Wrong delta link: " + link, e);
+        }
+    }
+
+    private long syncFrom(URL url, URLTemplate template) throws OneDriveAPIException {
+        OneDriveAPI api = folder.getApi();
+        JsonObject[] lastPage = new JsonObject[1];
+        JsonObjectIterator pages = new JsonObjectIterator(api, url, template) {
+
+            @Override
+            protected void onResponse(JsonObject response) {
+                lastPage[0] = response;
+            }
+
+        };
+        long count = 0;
+        try {
+            while (true) {
+                // Returns the items of one page, the page was read to its end so its links are known
+                List<JsonObject> items = pages.nextPage();
+                JsonObject page = lastPage[0];
+                if (page == null) {
+                    throw new OneDriveAPIException("Delta response misses its next or delta link.");
+                }
+                List<OneDriveItem.Metadata> changes = new ArrayList<>(items.size());
+                for (JsonObject item : items) {
+                    OneDriveItem.Metadata change = toChange(api, item);
+                    if (change != null) {
+                        changes.add(change);
+                    }
+                }
+                String deltaLink = getString(page, "@odata.deltaLink");
+                String nextLink = getString(page, "@odata.nextLink");
+                if (deltaLink == null && nextLink == null) {
+                    throw new OneDriveAPIException("Delta response misses its next or delta link.");
+                }
+                store.commit(changes, deltaLink == null ? nextLink : deltaLink, deltaLink != null);
+                if (api.getPathCache() != null) {
+                    api.getPathCache().invalidateAll(changes);
+                }
+                count += changes.size();
+                if (deltaLink != null) {
+                    return count;
+                }
+                lastPage[0] = null;
+            }
+        } catch (OneDriveAPIException e) {
+            throw e;
+        } catch (OneDriveRuntimeException e) {
+            throw new OneDriveAPIException("Couldn't read the changes.", e);
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't commit the changes to the delta store.", e);
+        } finally {
+            pages.close();
+        }
+    }
+
+    /**
+     * Returns the change carried by a delta item, or null for items which are neither files nor folders, such as
+     * packages. Deleted items may come back without their facets, they are returned as removals of their id.
+     */
+    private static OneDriveItem.Metadata toChange(OneDriveAPI api, JsonObject item) {
+        if (hasMember(item, "folder") || hasMember(item, "file")) {
+            return OneDriveItemIterator.toMetadata(api, item);
+        } else if (hasMember(item, "deleted")) {
+            String id = item.get("id").asString();
+            return new OneDriveDeletedItem(api, id).new Metadata(item);
+        }
+        return null;
+    }
+
+    private static boolean hasMember(JsonObject json, String name) {
+        JsonValue value = json.get(name);
+        return value != null && !value.isNull();
+    }
+
+    private static String getString(JsonObject json, String name) {
+        JsonValue value = json.get(name);
+        return value == null || value.isNull() ? null : value.asString();
+    }
+
+}
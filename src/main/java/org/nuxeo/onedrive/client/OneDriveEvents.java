@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+/**
+ * Emits JDK Flight Recorder events for requests, pages of collections and body transfers, see
+ * {@link OneDriveFlightRecorderEvents} for the events and their fields.
+ * <p>
+ * Events are disabled by default, they are turned on in the recording settings, with a custom {@code .jfc} file or
+ * {@code Recording.enable("org.nuxeo.onedrive.Request")}. When JFR isn't recording them, an event costs a check of
+ * whether it is enabled. On JVMs without JFR, this class does nothing and
+ * never loads the events, which is why it only deals with events as objects.
+ *
+ * @since 3.6
+ */
+final class OneDriveEvents {
+
+    static final String UPLOAD = "upload";
+
+    static final String DOWNLOAD = "download";
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private OneDriveEvents() {
+        // Utility class
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, OneDriveEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts a request event, returns null if it isn't recorded.
+     */
+    static Object beginRequest() {
+        return AVAILABLE ? OneDriveFlightRecorderEvents.beginRequest() : null;
+    }
+
+    static void commitRequest(Object event, String method, String endpoint, int status, long bytesSent,
+            int redirects, int retries) {
+        if (event != null) {
+            OneDriveFlightRecorderEvents.commitRequest(event, method, endpoint, status, bytesSent, redirects, retries);
+        }
+    }
+
+    /**
+     * Starts a page event, returns null if it isn't recorded.
+     */
+    static Object beginPage() {
+        return AVAILABLE ? OneDriveFlightRecorderEvents.beginPage() : null;
+    }
+
+    static void commitPage(Object event, String endpoint, int page, int items, boolean prefetched) {
+        if (event != null) {
+            OneDriveFlightRecorderEvents.commitPage(event, endpoint, page, items, prefetched);
+        }
+    }
+
+    /**
+     * Starts a transfer event, returns null if it isn't recorded.
+     */
+    static Object beginTransfer() {
+        return AVAILABLE ? OneDriveFlightRecorderEvents.beginTransfer() : null;
+    }
+
+    static void commitTransfer(Object event, String direction, String method, String endpoint, int status,
+            long bytes) {
+        if (event != null) {
+            OneDriveFlightRecorderEvents.commitTransfer(event, direction, method, endpoint, status, bytes);
+        }
+    }
+
+}
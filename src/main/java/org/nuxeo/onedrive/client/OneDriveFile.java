@@ -24,6 +24,10 @@ import com.eclipsesource.json.ParseException;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @since 1.0
@@ -36,6 +40,8 @@ public class OneDriveFile extends OneDriveItem {
     private static final URLTemplate UPLOAD_ROOT_CONTENT_URL = new URLTemplate("/drive/root:%s:/content");
     private static final URLTemplate UPLOAD_CONTENT_URL = new URLTemplate("/drive/items/%s/content");
     private static final URLTemplate GET_BY_PATH_URL = new URLTemplate("/drive/root:/%s");
+    private static final URLTemplate CREATE_UPLOAD_SESSION_ROOT_URL = new URLTemplate("/drive/root:%s:/createUploadSession");
+    private static final URLTemplate CREATE_UPLOAD_SESSION_URL = new URLTemplate("/drive/items/%s/createUploadSession");
 
     public OneDriveFile(OneDriveAPI api) {
         super(api);
@@ -49,33 +55,137 @@ public class OneDriveFile extends OneDriveItem {
 
     @Override
     public Metadata getMetadata(OneDriveExpand... expands) throws OneDriveAPIException {
-        QueryStringBuilder query = new QueryStringBuilder().set("expand", expands);
-        URL url = GET_FILE_URL.build(getApi().getBaseURL(), query, getId());
+        return getMetadata(null, expands);
+    }
+
+    /**
+     * Gets the metadata with only the selected properties, see {@link OneDriveSelect}. When the API has a
+     * {@link OneDriveResponseCache}, unchanged metadata are served from it.
+     *
+     * @since 3.6
+     */
+    @Override
+    public Metadata getMetadata(Set<OneDriveSelect> selects, OneDriveExpand... expands) throws OneDriveAPIException {
+        URL url = getMetadataURL(selects, expands);
+        OneDriveResponseCache cache = getApi().getResponseCache();
+        if (cache != null) {
+            return cache.get(getApi(), url, GET_FILE_URL, Metadata::new);
+        }
+        return readMetadata(url);
+    }
+
+    /**
+     * Reads the metadata from the service, bypassing the response cache whose entries have no download URL.
+     */
+    Metadata readMetadata(URL url) throws OneDriveAPIException {
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "GET");
+        request.setTemplate(GET_FILE_URL);
         OneDriveJsonResponse response = request.send();
         return new Metadata(response.getContent());
     }
 
+    URL getMetadataURL(OneDriveExpand... expands) {
+        return getMetadataURL(null, expands);
+    }
+
+    URL getMetadataURL(Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        QueryStringBuilder query = new QueryStringBuilder().set("select", OneDriveSelect.toParameters(selects))
+                                                           .set("expand", expands);
+        return GET_FILE_URL.build(getApi().getBaseURL(), query, getId());
+    }
+
+    /**
+     * Gets the metadata on the given executor, see {@link AbstractRequest#sendAsync(Executor)}.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<Metadata> getMetadataAsync(Executor executor, OneDriveExpand... expands) {
+        return OneDriveAsync.supply(executor, () -> getMetadata(expands));
+    }
+
     public InputStream download() throws OneDriveAPIException {
         URL url = GET_FILE_CONTENT_URL.build(getApi().getBaseURL(), getId());
         OneDriveRequest request = new OneDriveRequest(getApi(), url, "GET");
+        request.setTemplate(GET_FILE_CONTENT_URL);
         OneDriveResponse response = request.send();
         return response.getContent();
     }
+    /**
+     * Downloads the content to a local file, see {@link OneDriveFileDownload} to tune the download.
+     *
+     * @since 3.6
+     */
+    public Metadata download(Path target) throws OneDriveAPIException {
+        return new OneDriveFileDownload(this, target).download();
+    }
+
+    /**
+     * Starts the download on the given executor, the future completes once the response status is received and the
+     * content is read from the returned stream.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<InputStream> downloadAsync(Executor executor) {
+        return OneDriveAsync.supply(executor, this::download);
+    }
+
+    /**
+     * Downloads the content to a local file on the given executor, the segments are still downloaded by the threads
+     * of {@link OneDriveFileDownload}.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<Metadata> downloadAsync(Executor executor, Path target) {
+        return OneDriveAsync.supply(executor, () -> download(target));
+    }
+
+    URL getContentURL() {
+        return GET_FILE_CONTENT_URL.build(getApi().getBaseURL(), getId());
+    }
+
+    URLTemplate getContentTemplate() {
+        return GET_FILE_CONTENT_URL;
+    }
+
     public Metadata upload(boolean isRoot , long size, InputStream contentFromBytes) throws OneDriveAPIException {
-        URL url = isRoot ? UPLOAD_ROOT_CONTENT_URL.build(getApi().getBaseURL(), getId()) : UPLOAD_CONTENT_URL.build(getApi().getBaseURL(), getId());
+        URLTemplate template = isRoot ? UPLOAD_ROOT_CONTENT_URL : UPLOAD_CONTENT_URL;
+        URL url = template.build(getApi().getBaseURL(), getId());
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "PUT", "application/octet-stream");
-        request.addHeader("Content-Length", String.valueOf(size));
+        request.setTemplate(template);
 
-        request.setBody(contentFromBytes);
+        request.setBody(contentFromBytes, size);
         OneDriveJsonResponse response = request.send();
         return new Metadata(response.getContent());
     }
 
+    /**
+     * Uploads a local file through an upload session, see {@link OneDriveFileUpload} to tune or resume the upload.
+     *
+     * @since 3.6
+     */
+    public Metadata upload(boolean isRoot, Path source) throws OneDriveAPIException {
+        return new OneDriveFileUpload(this, isRoot, source).upload();
+    }
+
+    /**
+     * @since 3.6
+     */
+    public OneDriveUploadSession createUploadSession(boolean isRoot) throws OneDriveAPIException {
+        URLTemplate template = isRoot ? CREATE_UPLOAD_SESSION_ROOT_URL : CREATE_UPLOAD_SESSION_URL;
+        URL url = template.build(getApi().getBaseURL(), getId());
+        OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "POST");
+        request.setTemplate(template);
+        JsonObject item = new JsonObject().add("@microsoft.graph.conflictBehavior", "replace");
+        request.setBody(new JsonObject().add("item", item));
+        OneDriveJsonResponse response = request.send();
+        return new OneDriveUploadSession(getApi(), response.getContent());
+    }
+
     public Metadata renameItem(String newName, String newParentFolderId) throws OneDriveAPIException {
         URL url = ITEMS_URL.build(getApi().getBaseURL(), getId());
 
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "PATCH");
+        request.setTemplate(ITEMS_URL);
         JsonObject jsonObject = new JsonObject();
         JsonObject jsonParentObject = new JsonObject();
         // move if not empty
@@ -86,14 +196,23 @@ public class OneDriveFile extends OneDriveItem {
         jsonObject.add("name", newName);
         request.setBody(jsonObject);
         OneDriveJsonResponse response = request.send();
+        invalidatePaths();
 
         return new Metadata(response.getContent());
     }
+    /**
+     * Gets the metadata of the item at the path, see {@link OneDrivePathCache} to read known paths by id.
+     */
     public Metadata getByPath() throws OneDriveAPIException {
         URL url;
 
         url = GET_BY_PATH_URL.build(getApi().getBaseURL(), getPath());
+        OneDrivePathCache cache = getApi().getPathCache();
+        if (cache != null) {
+            return cache.getByPath(getApi(), getPath(), url, GET_BY_PATH_URL, Metadata::new);
+        }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "GET");
+        request.setTemplate(GET_BY_PATH_URL);
         OneDriveJsonResponse response = request.send();
 
         return new Metadata(response.getContent());
@@ -163,7 +282,8 @@ public class OneDriveFile extends OneDriveItem {
                 String memberName = member.getName();
                 if ("cTag".equals(memberName)) {
                     cTag = value.asString();
-                } else if ("@content.downloadUrl".equals(memberName)) {
+                } else if ("@content.downloadUrl".equals(memberName)
+                        || "@microsoft.graph.downloadUrl".equals(memberName)) {
                     downloadUrl = value.asString();
                 } else if ("file".equals(memberName)) {
                     parseMember(value.asObject(), this::parseFileMember);
@@ -0,0 +1,561 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.ParseException;
+
+/**
+ * Downloads the content of a file to a local file with concurrent range requests, see
+ * https://dev.onedrive.com/items/download.htm.
+ * <p>
+ * The local file is allocated to the size of the content, then segments are requested in parallel from the download
+ * url of the file and written at their position. When the server ignores ranges, the content is downloaded in a single
+ * request instead.
+ * <p>
+ * After a connection drop a segment continues from the last received byte with {@code Range} and {@code If-Range} on
+ * the entity tag of the first ranged response, so the server only sends the remaining bytes if the content didn't
+ * change meanwhile. Otherwise it answers with the whole new content and the download starts over. The cTag and eTag
+ * of the item metadata are not HTTP entity tags and can't be used as validator. When a checkpoint file is set, the
+ * received offsets and the entity tag are saved while downloading so that a download interrupted by a crash continues
+ * in a later run, as long as the cTag of the file is unchanged.
+ *
+ * @since 3.6
+ */
+public class OneDriveFileDownload {
+
+    /** 8 MiB. */
+    private static final long DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    /** 4 MiB, how many bytes a segment receives between two saves of the checkpoint. */
+    private static final long CHECKPOINT_INTERVAL = 4 * 1024 * 1024;
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final OneDriveFile file;
+
+    private final Path target;
+
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    private int concurrency = 4;
+
+    private int maxRetries = 3;
+
+    private Path checkpointFile;
+
+    private OneDriveProgressListener progressListener;
+
+    public OneDriveFileDownload(OneDriveFile file, Path target) {
+        this.file = Objects.requireNonNull(file);
+        this.target = Objects.requireNonNull(target);
+    }
+
+    public void setSegmentSize(long segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Sets how many segments are downloaded at the same time. With a concurrency of 1 the content is requested in a
+     * single range.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1.");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets how many times each segment is requested again after a network or server error before giving up.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Sets the file where received offsets are saved, it is deleted once the download completes.
+     */
+    public void setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Sets the listener of progress, it is called from the threads downloading segments one at a time.
+     */
+    public void setProgressListener(OneDriveProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public OneDriveFile.Metadata download() throws OneDriveAPIException {
+        // The download URL is pre-authenticated and expires, it is never served from the response cache
+        OneDriveFile.Metadata metadata = file.readMetadata(file.getMetadataURL());
+        long size = metadata.getSize();
+        String downloadUrl = metadata.getDownloadUrl();
+        String version = metadata.getCTag() == null ? metadata.getETag() : metadata.getCTag();
+        Checkpoint checkpoint = loadCheckpoint(version, size);
+        if (checkpoint == null) {
+            checkpoint = new Checkpoint(version, size, concurrency == 1 ? Math.max(size, 1) : segmentSize);
+        }
+        try (RandomAccessFile output = new RandomAccessFile(target.toFile(), "rw")) {
+            output.setLength(size);
+            FileChannel channel = output.getChannel();
+            if (size > 0 && !downloadSegments(channel, downloadUrl, checkpoint)) {
+                deleteCheckpoint();
+                downloadWhole(channel, downloadUrl, new Progress(size));
+            }
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't write the downloaded file.", e);
+        }
+        deleteCheckpoint();
+        return metadata;
+    }
+
+    /**
+     * Returns false if the server sent a whole content instead of a range, because it doesn't support ranges or
+     * because the content changed, or if its ranges have no strong entity tag to check they are of the same content.
+     */
+    private boolean downloadSegments(FileChannel channel, String downloadUrl, Checkpoint checkpoint)
+            throws OneDriveAPIException {
+        int segments = checkpoint.received.length;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, segments), runnable -> {
+            Thread thread = new Thread(runnable, "onedrive-download-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Progress progress = new Progress(checkpoint.size);
+        progress.add(checkpoint.getTransferred());
+        try {
+            CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < segments; i++) {
+                int segment = i;
+                completion.submit(() -> downloadSegment(channel, downloadUrl, checkpoint, segment, progress));
+            }
+            for (int i = 0; i < segments; i++) {
+                if (!completion.take().get()) {
+                    // Bytes written after this point would mix two contents
+                    stop(executor, checkpoint);
+                    return false;
+                }
+            }
+            return true;
+        } catch (ExecutionException e) {
+            stop(executor, checkpoint);
+            OneDriveAPIException exception = e.getCause() instanceof OneDriveAPIException
+                    ? (OneDriveAPIException) e.getCause()
+                    : new OneDriveAPIException("Couldn't download the file.", e.getCause());
+            try {
+                // Other segments went on after the last save
+                checkpoint.save(channel);
+            } catch (OneDriveAPIException saveException) {
+                exception.addSuppressed(saveException);
+            }
+            throw exception;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop(executor, checkpoint);
+            throw new OneDriveAPIException("The download was interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops the segments and waits for them, socket reads don't react to interruption but segments check the stop
+     * flag after each read.
+     */
+    private static void stop(ExecutorService executor, Checkpoint checkpoint) {
+        checkpoint.stopped = true;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Downloads the missing bytes of a segment, requesting them again after errors. Returns false if the server sent
+     * the whole content instead, the response is then dropped.
+     */
+    private boolean downloadSegment(FileChannel channel, String downloadUrl, Checkpoint checkpoint, int segment,
+            Progress progress) throws OneDriveAPIException {
+        long end = checkpoint.getEnd(segment);
+        int retries = 0;
+        while (true) {
+            long position = checkpoint.getReceived(segment);
+            if (position >= end || checkpoint.stopped) {
+                return true;
+            }
+            OneDriveRequest request = newRequest(downloadUrl);
+            // Ranges apply to the encoded content, ask for the raw bytes
+            request.setHeader("Accept-Encoding", "identity");
+            request.addHeader("Range", "bytes=" + position + "-" + (end - 1));
+            String validator = checkpoint.getValidator();
+            if (validator != null) {
+                request.addHeader("If-Range", validator);
+            }
+            try {
+                OneDriveResponse response = request.send();
+                // Segments requested before the first response have no If-Range, their entity tags are compared
+                if (response.getResponseCode() != 206 || !checkpoint.checkValidator(getEntityTag(response))) {
+                    response.disconnect();
+                    return false;
+                }
+                try (InputStream body = response.getContent()) {
+                    writeSegment(body, channel, checkpoint, segment, end, progress);
+                }
+                checkpoint.save(channel);
+                return true;
+            } catch (OneDriveAPIException e) {
+                checkpoint.save(channel);
+                if (retries++ >= maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+            } catch (IOException e) {
+                checkpoint.save(channel);
+                if (retries++ >= maxRetries) {
+                    throw new OneDriveAPIException("Couldn't download the file due to a network error.", e);
+                }
+            }
+        }
+    }
+
+    private void writeSegment(InputStream body, FileChannel channel, Checkpoint checkpoint, int segment, long end,
+            Progress progress) throws IOException {
+        long position = checkpoint.getReceived(segment);
+        long unsaved = 0;
+        byte[] buffer = StreamCopier.getBuffer();
+        int n;
+        while (position < end && !checkpoint.stopped && (n = body.read(buffer)) != -1) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, (int) Math.min(n, end - position));
+            while (byteBuffer.hasRemaining()) {
+                position += channel.write(byteBuffer, position);
+            }
+            checkpoint.setReceived(segment, position);
+            progress.add(byteBuffer.limit());
+            unsaved += byteBuffer.limit();
+            if (unsaved >= CHECKPOINT_INTERVAL) {
+                checkpoint.save(channel);
+                unsaved = 0;
+            }
+        }
+        if (position < end && !checkpoint.stopped) {
+            throw new EOFException("The download ended " + (end - position) + " bytes too early.");
+        }
+    }
+
+    /**
+     * Downloads the content in a single stream, for servers which don't support ranges or when the content changed.
+     * The local file is truncated to the received length as it may differ from the size in metadata.
+     */
+    private void downloadWhole(FileChannel channel, String downloadUrl, Progress progress)
+            throws OneDriveAPIException {
+        long position = 0;
+        String validator = null;
+        int retries = 0;
+        while (true) {
+            OneDriveRequest request = newRequest(downloadUrl);
+            request.setHeader("Accept-Encoding", "identity");
+            if (position > 0 && validator != null) {
+                request.addHeader("Range", "bytes=" + position + "-");
+                request.addHeader("If-Range", validator);
+            }
+            try {
+                OneDriveResponse response = request.send();
+                if (response.getResponseCode() != 206) {
+                    position = 0;
+                    progress.reset();
+                }
+                validator = getEntityTag(response);
+                try (InputStream body = response.getContent()) {
+                    byte[] buffer = StreamCopier.getBuffer();
+                    int n;
+                    while ((n = body.read(buffer)) != -1) {
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                        while (byteBuffer.hasRemaining()) {
+                            position += channel.write(byteBuffer, position);
+                        }
+                        progress.add(n);
+                    }
+                }
+                channel.truncate(position);
+                return;
+            } catch (OneDriveAPIException e) {
+                if (retries++ >= maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+            } catch (IOException e) {
+                if (retries++ >= maxRetries) {
+                    throw new OneDriveAPIException("Couldn't download the file due to a network error.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entity tag of the response if it is strong, only a strong one lets us continue this exact content.
+     */
+    private static String getEntityTag(OneDriveResponse response) {
+        String eTag = response.getHeaderField("ETag");
+        return eTag == null || eTag.startsWith("W/") ? null : eTag;
+    }
+
+    private static boolean isRetryable(OneDriveAPIException e) {
+        int responseCode = e.getResponseCode();
+        // Network errors and server errors
+        return responseCode == -1 || responseCode >= 500;
+    }
+
+    private OneDriveRequest newRequest(String downloadUrl) throws OneDriveAPIException {
+        if (downloadUrl == null) {
+            OneDriveRequest request = new OneDriveRequest(file.getApi(), file.getContentURL(), "GET");
+            request.setTemplate(file.getContentTemplate());
+            return request;
+        }
+        try {
+            // The download url is pre-authenticated
+            OneDriveRequest request = new OneDriveRequest(new URL(downloadUrl), "GET");
+            request.configure(file.getApi());
+            return request;
+        } catch (MalformedURLException e) {
+            throw new OneDriveAPIException("Download url returned from OneDrive API is malformed.", e);
+        }
+    }
+
+    private Checkpoint loadCheckpoint(String version, long size) {
+        if (checkpointFile == null || version == null || !Files.exists(checkpointFile)) {
+            return null;
+        }
+        JsonObject state;
+        try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            state = JsonObject.readFrom(reader);
+        } catch (IOException | ParseException e) {
+            // Unreadable checkpoint, start over
+            return null;
+        }
+        JsonValue stateVersion = state.get("version");
+        JsonValue stateValidator = state.get("validator");
+        JsonValue stateSize = state.get("size");
+        JsonValue stateSegmentSize = state.get("segmentSize");
+        JsonValue stateReceived = state.get("received");
+        try {
+            // The content changed or the local file was replaced since the checkpoint
+            if (stateVersion == null || !version.equals(stateVersion.asString()) || stateSize == null
+                    || stateSize.asLong() != size || stateSegmentSize == null || stateReceived == null
+                    || !Files.exists(target) || Files.size(target) != size) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        Checkpoint checkpoint = new Checkpoint(version, size, stateSegmentSize.asLong());
+        if (stateValidator != null && stateValidator.isString()) {
+            checkpoint.validator = stateValidator.asString();
+        }
+        // Bytes received without validator can't be continued safely, nor can they be with an older checkpoint
+        JsonArray received = stateReceived.asArray();
+        if (received.size() != checkpoint.received.length) {
+            return null;
+        }
+        for (int i = 0; i < received.size(); i++) {
+            long position = received.get(i).asLong();
+            if (position < checkpoint.getStart(i) || position > checkpoint.getEnd(i)) {
+                return null;
+            }
+            checkpoint.received[i] = position;
+        }
+        if (checkpoint.validator == null && checkpoint.getTransferred() > 0) {
+            return null;
+        }
+        return checkpoint;
+    }
+
+    private void deleteCheckpoint() throws OneDriveAPIException {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't delete the checkpoint of the download.", e);
+        }
+    }
+
+    /**
+     * The received offset of each segment, segment {@code i} starts at {@code i * segmentSize}.
+     */
+    private final class Checkpoint {
+
+        /** The cTag of the file, a checkpoint of another version of the content is discarded. */
+        private final String version;
+
+        /** The entity tag of the content, or null until a ranged response gave one. */
+        private String validator;
+
+        private final long size;
+
+        private final long segmentSize;
+
+        private final long[] received;
+
+        /** Set when the download of segments stops, on error or to download the whole content instead. */
+        private volatile boolean stopped;
+
+        private Checkpoint(String version, long size, long segmentSize) {
+            this.version = version;
+            this.size = size;
+            this.segmentSize = segmentSize;
+            received = new long[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < received.length; i++) {
+                received[i] = getStart(i);
+            }
+        }
+
+        private long getStart(int segment) {
+            return segment * segmentSize;
+        }
+
+        private long getEnd(int segment) {
+            return Math.min(getStart(segment) + segmentSize, size);
+        }
+
+        private synchronized String getValidator() {
+            return validator;
+        }
+
+        /**
+         * Returns false if the response is for another content than the one received so far, or has no strong entity
+         * tag: ranges which can't be checked could come from two versions of the content.
+         */
+        private synchronized boolean checkValidator(String entityTag) {
+            if (entityTag == null) {
+                return false;
+            }
+            if (validator == null) {
+                validator = entityTag;
+                return true;
+            }
+            return validator.equals(entityTag);
+        }
+
+        private synchronized long getReceived(int segment) {
+            return received[segment];
+        }
+
+        private synchronized void setReceived(int segment, long position) {
+            received[segment] = position;
+        }
+
+        private synchronized long getTransferred() {
+            long transferred = 0;
+            for (int i = 0; i < received.length; i++) {
+                transferred += received[i] - getStart(i);
+            }
+            return transferred;
+        }
+
+        /**
+         * Flushes the local file before saving offsets, so that a saved offset never points past bytes lost in a
+         * crash.
+         */
+        private synchronized void save(FileChannel channel) throws OneDriveAPIException {
+            if (checkpointFile == null || version == null) {
+                return;
+            }
+            JsonArray offsets = new JsonArray();
+            for (long position : received) {
+                offsets.add(position);
+            }
+            JsonObject state = new JsonObject().add("version", version)
+                                               .add("validator", validator == null ? JsonValue.NULL
+                                                       : JsonValue.valueOf(validator))
+                                               .add("size", size)
+                                               .add("segmentSize", segmentSize)
+                                               .add("received", offsets);
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try {
+                channel.force(false);
+                try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                    state.writeTo(writer);
+                }
+                Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new OneDriveAPIException("Couldn't save the checkpoint of the download.", e);
+            }
+        }
+
+    }
+
+    private final class Progress {
+
+        private final long total;
+
+        private final long startTime = System.nanoTime();
+
+        private long transferred;
+
+        private Progress(long total) {
+            this.total = total;
+        }
+
+        private synchronized void add(long bytes) {
+            transferred += bytes;
+            if (progressListener != null) {
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                progressListener.onProgress(transferred, total, seconds > 0 ? transferred / seconds : 0);
+            }
+        }
+
+        private synchronized void reset() {
+            transferred = 0;
+        }
+
+    }
+
+}
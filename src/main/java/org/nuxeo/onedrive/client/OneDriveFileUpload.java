@@ -0,0 +1,392 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.ParseException;
+
+/**
+ * Uploads a file through an upload session, see https://dev.onedrive.com/items/upload_large_files.htm.
+ * <p>
+ * The file is sent in fragments which must reach the service in order, so fragments are not sent concurrently:
+ * instead the next fragments are read from disk while the current one is on the network. After a network error the
+ * upload asks the session which ranges were received and resumes from there. When a state file is set, the session is
+ * saved after each acknowledged fragment so that an upload interrupted by a crash resumes in a later run.
+ *
+ * @since 3.6
+ */
+public class OneDriveFileUpload {
+
+    /** The size of fragments must be a multiple of 320 KiB. */
+    public static final int FRAGMENT_ALIGNMENT = 320 * 1024;
+
+    /** 60 MiB. */
+    public static final int MAX_FRAGMENT_SIZE = 192 * FRAGMENT_ALIGNMENT;
+
+    /** 10 MiB. */
+    private static final int DEFAULT_FRAGMENT_SIZE = 32 * FRAGMENT_ALIGNMENT;
+
+    private final OneDriveFile file;
+
+    private final boolean isRoot;
+
+    private final Path source;
+
+    private int fragmentSize = DEFAULT_FRAGMENT_SIZE;
+
+    private int pipelineDepth = 2;
+
+    private int maxResumes = 3;
+
+    private Path stateFile;
+
+    private OneDriveProgressListener progressListener;
+
+    /**
+     * @param file the file to upload, {@code isRoot} has the same meaning as for
+     *            {@link OneDriveFile#upload(boolean, long, java.io.InputStream)}
+     * @param source the local file to upload
+     */
+    public OneDriveFileUpload(OneDriveFile file, boolean isRoot, Path source) {
+        this.file = Objects.requireNonNull(file);
+        this.isRoot = isRoot;
+        this.source = Objects.requireNonNull(source);
+    }
+
+    /**
+     * Sets the size of fragments, it is rounded down to a multiple of {@link #FRAGMENT_ALIGNMENT}.
+     */
+    public void setFragmentSize(int fragmentSize) {
+        if (fragmentSize < FRAGMENT_ALIGNMENT || fragmentSize > MAX_FRAGMENT_SIZE) {
+            throw new IllegalArgumentException("Fragment size must be between " + FRAGMENT_ALIGNMENT + " and "
+                    + MAX_FRAGMENT_SIZE + " bytes.");
+        }
+        this.fragmentSize = fragmentSize - fragmentSize % FRAGMENT_ALIGNMENT;
+    }
+
+    /**
+     * Sets how many fragments are read ahead of the one being sent, memory used is about
+     * {@code (depth + 2) * fragmentSize}.
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("Pipeline depth must be at least 1.");
+        }
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Sets how many times the upload resumes after an error before giving up.
+     */
+    public void setMaxResumes(int maxResumes) {
+        this.maxResumes = maxResumes;
+    }
+
+    /**
+     * Sets the file where the session is saved, it is deleted once the upload completes.
+     */
+    public void setStateFile(Path stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    public void setProgressListener(OneDriveProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public OneDriveFile.Metadata upload() throws OneDriveAPIException {
+        long size;
+        long lastModified;
+        try {
+            size = Files.size(source);
+            lastModified = Files.getLastModifiedTime(source).toMillis();
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't read the file to upload.", e);
+        }
+        if (size == 0) {
+            // Sessions don't accept empty ranges
+            return file.upload(isRoot, 0, new ByteArrayInputStream(new byte[0]));
+        }
+
+        OneDriveUploadSession session = loadSession(size, lastModified);
+        if (session == null) {
+            session = createSession(size, lastModified);
+        }
+        Progress progress = new Progress(size);
+        ExecutorService reader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "onedrive-upload-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            int resumes = 0;
+            while (true) {
+                try {
+                    OneDriveFile.Metadata metadata = uploadFragments(reader, session, size, lastModified, progress);
+                    deleteState();
+                    return metadata;
+                } catch (OneDriveAPIException e) {
+                    if (resumes++ >= maxResumes || !isResumable(e)) {
+                        throw e;
+                    }
+                    OneDriveUploadSession status = getStatus(session);
+                    session = status == null ? createSession(size, lastModified) : status;
+                }
+            }
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    private static boolean isResumable(OneDriveAPIException e) {
+        int responseCode = e.getResponseCode();
+        // Network errors, server errors, lost session or unexpected range
+        return responseCode == -1 || responseCode >= 500 || responseCode == 404 || responseCode == 416;
+    }
+
+    private OneDriveFile.Metadata uploadFragments(ExecutorService reader, OneDriveUploadSession session, long size,
+            long lastModified, Progress progress) throws OneDriveAPIException {
+        // New sessions may not list their expected ranges
+        long offset = Math.max(0, session.getNextExpectedOffset());
+        BlockingQueue<Fragment> fragments = new ArrayBlockingQueue<>(pipelineDepth);
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(pipelineDepth + 2);
+        Future<?> producer = reader.submit(() -> readFragments(offset, size, fragments, buffers));
+        try {
+            URL url = session.getURL();
+            while (true) {
+                Fragment fragment = take(fragments);
+                if (fragment.error != null) {
+                    throw new OneDriveAPIException("Couldn't read the file to upload.", fragment.error);
+                } else if (fragment == Fragment.END) {
+                    throw new OneDriveAPIException("The upload session is still open after its last fragment.");
+                }
+                long end = fragment.offset + fragment.length;
+                OneDriveJsonRequest request = new OneDriveJsonRequest(url, "PUT");
+                session.configure(request);
+                request.addHeader("Content-Range", "bytes " + fragment.offset + "-" + (end - 1) + "/" + size);
+                request.setBody(new ByteArrayInputStream(fragment.buffer, 0, fragment.length), fragment.length);
+                OneDriveJsonResponse response = request.send();
+                JsonObject json = response.getContent();
+                buffers.offer(fragment.buffer);
+                progress.acknowledge(end, fragment.length);
+                if (response.getResponseCode() != 202) {
+                    return file.new Metadata(json);
+                }
+                OneDriveUploadSession status = new OneDriveUploadSession(file.getApi(), json);
+                if (status.getNextExpectedOffset() != end) {
+                    throw new OneDriveAPIException("The OneDrive API expects another range than the next fragment.",
+                            416, json.toString());
+                }
+                saveState(session, size, lastModified, end);
+            }
+        } finally {
+            producer.cancel(true);
+        }
+    }
+
+    private void readFragments(long offset, long size, BlockingQueue<Fragment> fragments,
+            BlockingQueue<byte[]> buffers) {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long position = offset;
+            while (position < size) {
+                byte[] buffer = buffers.poll();
+                if (buffer == null) {
+                    buffer = new byte[(int) Math.min(fragmentSize, size)];
+                }
+                int length = (int) Math.min(buffer.length, size - position);
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+                while (byteBuffer.hasRemaining()) {
+                    if (channel.read(byteBuffer, position + byteBuffer.position()) == -1) {
+                        throw new EOFException("The file to upload is shorter than when the upload started.");
+                    }
+                }
+                fragments.put(new Fragment(position, buffer, length, null));
+                position += length;
+            }
+            fragments.put(Fragment.END);
+        } catch (IOException e) {
+            try {
+                fragments.put(new Fragment(-1, null, 0, e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (InterruptedException e) {
+            // Upload is over or failed
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Fragment take(BlockingQueue<Fragment> fragments) throws OneDriveAPIException {
+        try {
+            return fragments.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OneDriveAPIException("The upload was interrupted.", e);
+        }
+    }
+
+    private OneDriveUploadSession createSession(long size, long lastModified) throws OneDriveAPIException {
+        OneDriveUploadSession session = file.createUploadSession(isRoot);
+        saveState(session, size, lastModified, 0);
+        return session;
+    }
+
+    /**
+     * Returns the status of the session, or null if the session no longer exists.
+     */
+    private static OneDriveUploadSession getStatus(OneDriveUploadSession session) throws OneDriveAPIException {
+        try {
+            OneDriveUploadSession status = session.getStatus();
+            return status.getNextExpectedOffset() < 0 ? null : status;
+        } catch (OneDriveAPIException e) {
+            if (e.getResponseCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private OneDriveUploadSession loadSession(long size, long lastModified) throws OneDriveAPIException {
+        if (stateFile == null || !Files.exists(stateFile)) {
+            return null;
+        }
+        JsonObject state;
+        try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+            state = JsonObject.readFrom(reader);
+        } catch (IOException | ParseException e) {
+            // Unreadable state, start a new session
+            return null;
+        }
+        JsonValue stateSource = state.get("source");
+        JsonValue stateSize = state.get("size");
+        JsonValue stateLastModified = state.get("lastModified");
+        if (stateSource == null || !source.toAbsolutePath().toString().equals(stateSource.asString())
+                || stateSize == null || stateSize.asLong() != size || stateLastModified == null
+                || stateLastModified.asLong() != lastModified) {
+            return null;
+        }
+        OneDriveUploadSession session = new OneDriveUploadSession(file.getApi(), state);
+        ZonedDateTime expiration = session.getExpirationDateTime();
+        if (session.getUploadUrl() == null || expiration != null && expiration.isBefore(ZonedDateTime.now())) {
+            return null;
+        }
+        return getStatus(session);
+    }
+
+    private void saveState(OneDriveUploadSession session, long size, long lastModified, long offset)
+            throws OneDriveAPIException {
+        if (stateFile == null) {
+            return;
+        }
+        JsonObject state = new JsonObject().add("uploadUrl", session.getUploadUrl())
+                                           .add("source", source.toAbsolutePath().toString())
+                                           .add("size", size)
+                                           .add("lastModified", lastModified)
+                                           .add("acknowledged", offset);
+        if (session.getExpirationDateTime() != null) {
+            state.add("expirationDateTime", session.getExpirationDateTime().toString());
+        }
+        Path temporary = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                state.writeTo(writer);
+            }
+            Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't save the state of the upload session.", e);
+        }
+    }
+
+    private void deleteState() throws OneDriveAPIException {
+        if (stateFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(stateFile);
+        } catch (IOException e) {
+            throw new OneDriveAPIException("Couldn't delete the state of the upload session.", e);
+        }
+    }
+
+    private static final class Fragment {
+
+        private static final Fragment END = new Fragment(-1, null, 0, null);
+
+        private final long offset;
+
+        private final byte[] buffer;
+
+        private final int length;
+
+        private final IOException error;
+
+        private Fragment(long offset, byte[] buffer, int length, IOException error) {
+            this.offset = offset;
+            this.buffer = buffer;
+            this.length = length;
+            this.error = error;
+        }
+
+    }
+
+    private final class Progress {
+
+        private final long total;
+
+        private final long startTime = System.nanoTime();
+
+        /** Bytes sent by this upload, without the ones sent before it resumed. */
+        private long sent;
+
+        private Progress(long total) {
+            this.total = total;
+        }
+
+        private void acknowledge(long transferred, int length) {
+            sent += length;
+            if (progressListener != null) {
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                progressListener.onProgress(transferred, total, seconds > 0 ? sent / seconds : 0);
+            }
+        }
+
+    }
+
+}
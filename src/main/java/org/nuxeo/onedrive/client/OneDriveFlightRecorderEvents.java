@@ -0,0 +1,194 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder events of the client, only loaded through {@link OneDriveEvents} when JFR is available.
+ * Endpoints are the {@link URLTemplate} of the url, or its scheme and host for urls given by the service.
+ * <p>
+ * This class is compiled against {@code jdk.jfr}, so building the client needs a JDK providing it, 8u262 or later, and
+ * can't use {@code --release 8}.
+ *
+ * @since 3.6
+ */
+final class OneDriveFlightRecorderEvents {
+
+    private OneDriveFlightRecorderEvents() {
+        // Utility class
+    }
+
+    static Object beginRequest() {
+        RequestEvent event = new RequestEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitRequest(Object object, String method, String endpoint, int status, long bytesSent,
+            int redirects, int retries) {
+        RequestEvent event = (RequestEvent) object;
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = method;
+            event.endpoint = endpoint;
+            event.status = status;
+            event.bytesSent = bytesSent;
+            event.redirects = redirects;
+            event.retries = retries;
+            event.commit();
+        }
+    }
+
+    static Object beginPage() {
+        PageEvent event = new PageEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitPage(Object object, String endpoint, int page, int items, boolean prefetched) {
+        PageEvent event = (PageEvent) object;
+        event.end();
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint;
+            event.page = page;
+            event.items = items;
+            event.prefetched = prefetched;
+            event.commit();
+        }
+    }
+
+    static Object beginTransfer() {
+        TransferEvent event = new TransferEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitTransfer(Object object, String direction, String method, String endpoint, int status,
+            long bytes) {
+        TransferEvent event = (TransferEvent) object;
+        event.end();
+        if (event.shouldCommit()) {
+            event.direction = direction;
+            event.method = method;
+            event.endpoint = endpoint;
+            event.status = status;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Name("org.nuxeo.onedrive.Request")
+    @Label("OneDrive Request")
+    @Description("A request sent to the OneDrive API, from sending it to receiving the status of its response")
+    @Category("OneDrive")
+    @Enabled(false)
+    @StackTrace(false)
+    static class RequestEvent extends Event {
+
+        @Label("Method")
+        String method;
+
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Status")
+        @Description("Status of the last response, -1 on network error")
+        int status;
+
+        @Label("Bytes Sent")
+        @Description("Bytes of body written by all attempts")
+        @DataAmount
+        long bytesSent;
+
+        @Label("Redirects")
+        int redirects;
+
+        @Label("Retries")
+        int retries;
+
+    }
+
+    @Name("org.nuxeo.onedrive.Page")
+    @Label("OneDrive Page")
+    @Description("A page of a collection, from its request to the end of its items")
+    @Category("OneDrive")
+    @Enabled(false)
+    @StackTrace(false)
+    static class PageEvent extends Event {
+
+        @Label("Endpoint")
+        @Description("Endpoint of the first page of the collection")
+        String endpoint;
+
+        @Label("Page")
+        @Description("Index of the page in the collection, from 0")
+        int page;
+
+        @Label("Items")
+        int items;
+
+        @Label("Prefetched")
+        boolean prefetched;
+
+    }
+
+    @Name("org.nuxeo.onedrive.Transfer")
+    @Label("OneDrive Transfer")
+    @Description("A request body sent until its response status, or a response body read until the response is closed")
+    @Category("OneDrive")
+    @Enabled(false)
+    @StackTrace(false)
+    static class TransferEvent extends Event {
+
+        @Label("Direction")
+        String direction;
+
+        @Label("Method")
+        String method;
+
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Status")
+        int status;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+    }
+
+}
@@ -27,12 +27,23 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * @since 1.0
  */
 public class OneDriveFolder extends OneDriveItem implements Iterable<OneDriveItem.Metadata> {
 
+    /**
+     * Number of children listed per page when no page size is given.
+     *
+     * @since 3.6
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
     private static final URLTemplate GET_FOLDER_ROOT_URL = new URLTemplate("/drive/root");
 
     private static final URLTemplate GET_CHILDREN_ROOT_URL = new URLTemplate("/drive/root/children");
@@ -60,18 +71,51 @@ public class OneDriveFolder extends OneDriveItem implements Iterable<OneDriveIte
 
     @Override
     public Metadata getMetadata(OneDriveExpand... expands) throws OneDriveAPIException {
-        QueryStringBuilder query = new QueryStringBuilder().set("expand", expands);
-        URL url;
-        if (isRoot()) {
-            url = GET_FOLDER_ROOT_URL.build(getApi().getBaseURL(), query);
-        } else {
-            url = GET_FOLDER_URL.build(getApi().getBaseURL(), query, getId());
+        return getMetadata(null, expands);
+    }
+
+    /**
+     * Gets the metadata with only the selected properties, see {@link OneDriveSelect}. When the API has a
+     * {@link OneDriveResponseCache}, unchanged metadata are served from it.
+     *
+     * @since 3.6
+     */
+    @Override
+    public Metadata getMetadata(Set<OneDriveSelect> selects, OneDriveExpand... expands) throws OneDriveAPIException {
+        URL url = getMetadataURL(selects, expands);
+        OneDriveResponseCache cache = getApi().getResponseCache();
+        if (cache != null) {
+            return cache.get(getApi(), url, getMetadataTemplate(), Metadata::new);
         }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "GET");
+        request.setTemplate(getMetadataTemplate());
         OneDriveJsonResponse response = request.send();
         return new Metadata(response.getContent());
     }
 
+    URL getMetadataURL(OneDriveExpand... expands) {
+        return getMetadataURL(null, expands);
+    }
+
+    URL getMetadataURL(Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        QueryStringBuilder query = new QueryStringBuilder().set("select", OneDriveSelect.toParameters(selects))
+                                                           .set("expand", expands);
+        return getMetadataTemplate().build(getApi().getBaseURL(), query, getId());
+    }
+
+    URLTemplate getMetadataTemplate() {
+        return isRoot() ? GET_FOLDER_ROOT_URL : GET_FOLDER_URL;
+    }
+
+    /**
+     * Gets the metadata on the given executor, see {@link AbstractRequest#sendAsync(Executor)}.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<Metadata> getMetadataAsync(Executor executor, OneDriveExpand... expands) {
+        return OneDriveAsync.supply(executor, () -> getMetadata(expands));
+    }
+
     public static OneDriveFolder getRoot(OneDriveAPI api) {
         return new OneDriveFolder(api);
     }
@@ -84,54 +128,137 @@ public class OneDriveFolder extends OneDriveItem implements Iterable<OneDriveIte
         return () -> iterator(expands);
     }
 
+    /**
+     * Lists the children with only the selected properties, see {@link OneDriveSelect}.
+     *
+     * @since 3.6
+     */
+    public Iterable<OneDriveItem.Metadata> getChildren(Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        return () -> iterator(selects, expands);
+    }
+
     @Override
     public Iterator<OneDriveItem.Metadata> iterator() {
         return iterator(new OneDriveExpand[]{});
     }
 
+    /**
+     * Lists the children as a stream which splits at page boundaries, closing the stream releases the connection. See
+     * {@link Metadata#getChildrenStream(Set, OneDriveExpand...)} to give the number of children as size estimate.
+     *
+     * @since 3.6
+     */
+    public Stream<OneDriveItem.Metadata> getChildrenStream(Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        return iterator(DEFAULT_PAGE_SIZE, selects, expands).stream();
+    }
+
     public Iterator<OneDriveItem.Metadata> iterator(OneDriveExpand... expands) {
-        QueryStringBuilder query = new QueryStringBuilder().set("top", 200);
-        URL url;
-        if (isRoot()) {
-            url = GET_CHILDREN_ROOT_URL.build(getApi().getBaseURL(), query);
-        } else {
-            url = GET_CHILDREN_URL.build(getApi().getBaseURL(), query, getId());
+        return iterator(null, expands);
+    }
+
+    /**
+     * @since 3.6
+     */
+    public Iterator<OneDriveItem.Metadata> iterator(Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        return iterator(DEFAULT_PAGE_SIZE, selects, expands);
+    }
+
+    /**
+     * Lists the children by pages of the given size. Larger pages save round trips, see also
+     * {@link OneDriveItemIterator#setPrefetch(int, java.util.concurrent.Executor)}.
+     *
+     * @since 3.6
+     */
+    public OneDriveItemIterator iterator(int pageSize, Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
         }
-        return new OneDriveItemIterator(getApi(), url);
+        QueryStringBuilder query = new QueryStringBuilder().set("top", pageSize)
+                                                           .set("select", OneDriveSelect.toParameters(selects))
+                                                           .set("expand", expands);
+        URLTemplate template = isRoot() ? GET_CHILDREN_ROOT_URL : GET_CHILDREN_URL;
+        URL url = template.build(getApi().getBaseURL(), query, getId());
+        return new OneDriveItemIterator(getApi(), url, template);
     }
 
+    /**
+     * Gets the metadata of the item at the path, see {@link OneDrivePathCache} to read known paths by id.
+     */
     public Metadata getByPath() throws OneDriveAPIException {
         URL url;
 
         url = GET_BY_PATH_URL.build(getApi().getBaseURL(), getId());
+        OneDrivePathCache cache = getApi().getPathCache();
+        if (cache != null) {
+            return cache.getByPath(getApi(), getId(), url, GET_BY_PATH_URL, Metadata::new);
+        }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "GET");
+        request.setTemplate(GET_BY_PATH_URL);
         OneDriveJsonResponse response = request.send();
 
         return new Metadata(response.getContent());
     }
 
     public Iterable<OneDriveItem.Metadata> search(String search, OneDriveExpand... expands) {
-        QueryStringBuilder query = new QueryStringBuilder().set("q", search).set("expand", expands);
-        URL url;
-        if (isRoot()) {
-            url = SEARCH_IN_ROOT_URL.build(getApi().getBaseURL(), query);
-        } else {
-            url = SEARCH_IN_FOLDER_URL.build(getApi().getBaseURL(), query, getId());
-        }
-        return () -> new OneDriveItemIterator(getApi(), url);
+        return search(search, null, expands);
+    }
+
+    /**
+     * Searches items with only the selected properties, see {@link OneDriveSelect}.
+     *
+     * @since 3.6
+     */
+    public Iterable<OneDriveItem.Metadata> search(String search, Set<OneDriveSelect> selects,
+            OneDriveExpand... expands) {
+        URL url = getSearchURL(search, selects, expands);
+        return () -> new OneDriveItemIterator(getApi(), url, getSearchTemplate());
+    }
+
+    /**
+     * Searches items as a stream which splits at page boundaries, closing the stream releases the connection.
+     *
+     * @since 3.6
+     */
+    public Stream<OneDriveItem.Metadata> searchStream(String search, Set<OneDriveSelect> selects,
+            OneDriveExpand... expands) {
+        return new OneDriveItemIterator(getApi(), getSearchURL(search, selects, expands), getSearchTemplate()).stream();
+    }
+
+    private URL getSearchURL(String search, Set<OneDriveSelect> selects, OneDriveExpand... expands) {
+        QueryStringBuilder query = new QueryStringBuilder().set("q", search)
+                                                           .set("select", OneDriveSelect.toParameters(selects))
+                                                           .set("expand", expands);
+        return getSearchTemplate().build(getApi().getBaseURL(), query, getId());
+    }
+
+    private URLTemplate getSearchTemplate() {
+        return isRoot() ? SEARCH_IN_ROOT_URL : SEARCH_IN_FOLDER_URL;
     }
 
     /**
      * @since 1.1
      */
     public OneDriveDeltaItemIterator delta() {
-        URL url;
-        if (isRoot()) {
-            url = DELTA_IN_ROOT_URL.build(getApi().getBaseURL());
-        } else {
-            url = DELTA_IN_FOLDER_URL.build(getApi().getBaseURL(), getId());
-        }
-        return new OneDriveDeltaItemIterator(getApi(), url);
+        return delta((Set<OneDriveSelect>) null);
+    }
+
+    /**
+     * Starts a delta enumeration with only the selected properties, see {@link OneDriveSelect}. The selection is
+     * kept by the delta link.
+     *
+     * @since 3.6
+     */
+    public OneDriveDeltaItemIterator delta(Set<OneDriveSelect> selects) {
+        return new OneDriveDeltaItemIterator(getApi(), getDeltaURL(selects), getDeltaTemplate());
+    }
+
+    URL getDeltaURL(Set<OneDriveSelect> selects) {
+        QueryStringBuilder query = new QueryStringBuilder().set("select", OneDriveSelect.toParameters(selects));
+        return getDeltaTemplate().build(getApi().getBaseURL(), query, getId());
+    }
+
+    URLTemplate getDeltaTemplate() {
+        return isRoot() ? DELTA_IN_ROOT_URL : DELTA_IN_FOLDER_URL;
     }
 
     /**
@@ -153,17 +280,35 @@ public class OneDriveFolder extends OneDriveItem implements Iterable<OneDriveIte
      * @since 2.2
      */
     public Metadata createFolder(boolean isRoot, String newFolder) throws IOException {
-        URLTemplate stringUrl = isRoot ? GET_CHILDREN_ROOT_URL : GET_CHILDREN_URL;
-        URL url = stringUrl.build(getApi().getBaseURL(), getId());
+        URL url = getChildrenURL(isRoot);
 
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "POST");
+        request.setTemplate(isRoot ? GET_CHILDREN_ROOT_URL : GET_CHILDREN_URL);
+        request.setBody(newFolderBody(newFolder));
+        OneDriveJsonResponse response = request.send();
+        return new Metadata(response.getContent());
+    }
+
+    URL getChildrenURL(boolean isRoot) {
+        URLTemplate stringUrl = isRoot ? GET_CHILDREN_ROOT_URL : GET_CHILDREN_URL;
+        return stringUrl.build(getApi().getBaseURL(), getId());
+    }
+
+    static JsonObject newFolderBody(String newFolder) {
         JsonObject jsonObject = new JsonObject();
         jsonObject.add("name", newFolder);
         jsonObject.add("folder", new JsonObject());
 //        jsonObject.add("@microsoft.graph.conflictBehavior", "replace");
-        request.setBody(jsonObject);
-        OneDriveJsonResponse response = request.send();
-        return new Metadata(response.getContent());
+        return jsonObject;
+    }
+
+    /**
+     * Creates the folder on the given executor.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<Metadata> createFolderAsync(Executor executor, boolean isRoot, String newFolder) {
+        return OneDriveAsync.supply(executor, () -> createFolder(isRoot, newFolder));
     }
 
     @Override
@@ -195,6 +340,16 @@ public class OneDriveFolder extends OneDriveItem implements Iterable<OneDriveIte
             return childCount;
         }
 
+        /**
+         * Lists the children as a stream whose size is estimated from the child count.
+         *
+         * @since 3.6
+         */
+        public Stream<OneDriveItem.Metadata> getChildrenStream(Set<OneDriveSelect> selects,
+                OneDriveExpand... expands) {
+            return getResource().iterator(DEFAULT_PAGE_SIZE, selects, expands).stream(childCount);
+        }
+
         @Override
         protected void parseMember(JsonObject.Member member) {
             super.parseMember(member);
@@ -21,22 +21,25 @@ package org.nuxeo.onedrive.client;
 /**
  * @since 1.1
  */
-public class OneDriveGraphAPI implements OneDriveAPI {
+public class OneDriveGraphAPI extends AbstractOneDriveAPI {
 
     protected String accessToken;
     protected String userId;
     protected String siteId;
 
     public OneDriveGraphAPI(String accessToken) {
+        super(accessToken);
         this.accessToken = accessToken;
     }
 
     public OneDriveGraphAPI(String accessToken, String userId) {
+        super(accessToken);
         this.accessToken = accessToken;
         this.userId = userId;
     }
 
     public OneDriveGraphAPI(String accessToken, String sites, String userId) {
+        super(accessToken);
         this.accessToken = accessToken;
         this.siteId = sites;
         this.userId = userId;
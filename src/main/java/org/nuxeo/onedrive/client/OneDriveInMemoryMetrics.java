@@ -0,0 +1,278 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps counters and latency histograms per HTTP method and endpoint in memory, to be read by monitoring or logged.
+ * <p>
+ * Recording takes no lock and doesn't allocate once an endpoint was seen: counters are {@link LongAdder}s and
+ * histograms are arrays of counters over logarithmic buckets, each power of two being split in 8 buckets so that
+ * percentiles are within 12.5% of the recorded values.
+ *
+ * @since 3.6
+ */
+public class OneDriveInMemoryMetrics implements OneDriveMetrics {
+
+    private static final int MAX_CODE = 600;
+
+    /** Endpoints by method, there are a few methods and a few tens of endpoints. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Endpoint>> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void onConnect(String method, String endpoint, long bytesSent, long nanos) {
+        Endpoint stats = get(method, endpoint);
+        if (bytesSent > 0) {
+            stats.bytesSent.add(bytesSent);
+        }
+        stats.connect.record(nanos);
+    }
+
+    @Override
+    public void onFirstByte(String method, String endpoint, int responseCode, long nanos) {
+        Endpoint stats = get(method, endpoint);
+        stats.requests.increment();
+        stats.responseCodes.incrementAndGet(responseCode > 0 && responseCode < MAX_CODE ? responseCode : 0);
+        stats.firstByte.record(nanos);
+    }
+
+    @Override
+    public void onRetry(String method, String endpoint, int responseCode) {
+        get(method, endpoint).retries.increment();
+    }
+
+    @Override
+    public void onClose(String method, String endpoint, int responseCode, long bytesReceived, long bodyNanos,
+            long totalNanos) {
+        Endpoint stats = get(method, endpoint);
+        stats.bytesReceived.add(bytesReceived);
+        stats.body.record(bodyNanos);
+        stats.total.record(totalNanos);
+    }
+
+    private Endpoint get(String method, String endpoint) {
+        ConcurrentMap<String, Endpoint> byEndpoint = endpoints.get(method);
+        if (byEndpoint == null) {
+            byEndpoint = endpoints.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
+        }
+        Endpoint stats = byEndpoint.get(endpoint);
+        if (stats == null) {
+            stats = byEndpoint.computeIfAbsent(endpoint, key -> new Endpoint());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the endpoints seen so far keyed by method then endpoint, sorted by name.
+     */
+    public Map<String, Map<String, Endpoint>> getEndpoints() {
+        Map<String, Map<String, Endpoint>> result = new TreeMap<>();
+        endpoints.forEach(
+                (method, byEndpoint) -> result.put(method, Collections.unmodifiableMap(new TreeMap<>(byEndpoint))));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the metrics of the given method and endpoint, or null if no request was sent to it.
+     */
+    public Endpoint getEndpoint(String method, String endpoint) {
+        ConcurrentMap<String, Endpoint> byEndpoint = endpoints.get(method);
+        return byEndpoint == null ? null : byEndpoint.get(endpoint);
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Metrics of the requests sent with a method to an endpoint.
+     */
+    public static final class Endpoint {
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder bytesSent = new LongAdder();
+
+        private final LongAdder bytesReceived = new LongAdder();
+
+        /** Responses by status, network errors and unexpected statuses are counted at 0. */
+        private final AtomicLongArray responseCodes = new AtomicLongArray(MAX_CODE);
+
+        private final Histogram connect = new Histogram();
+
+        private final Histogram firstByte = new Histogram();
+
+        private final Histogram body = new Histogram();
+
+        private final Histogram total = new Histogram();
+
+        Endpoint() {
+            // Created on first request
+        }
+
+        /**
+         * Returns the number of attempts, a retried request counts once per attempt.
+         */
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        public long getRetryCount() {
+            return retries.sum();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        /**
+         * Returns the number of responses by status, -1 counting network errors and unexpected statuses.
+         */
+        public Map<Integer, Long> getResponseCodeCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int code = 0; code < MAX_CODE; code++) {
+                long count = responseCodes.get(code);
+                if (count > 0) {
+                    counts.put(code == 0 ? -1 : code, count);
+                }
+            }
+            return counts;
+        }
+
+        /** Time to open the connection and send the request. */
+        public Histogram getConnectLatency() {
+            return connect;
+        }
+
+        /** Time from the start of an attempt to the status of its response. */
+        public Histogram getFirstByteLatency() {
+            return firstByte;
+        }
+
+        /** Time from the status of the response to its close, usually spent reading the body. */
+        public Histogram getBodyLatency() {
+            return body;
+        }
+
+        /** Time from sending the request to closing its response, retries included. */
+        public Histogram getTotalLatency() {
+            return total;
+        }
+
+    }
+
+    /**
+     * Distribution of durations in nanoseconds over logarithmic buckets.
+     */
+    public static final class Histogram {
+
+        /** Values below 8 have their own bucket, then each power of two from 2^3 to 2^62 has 8 buckets. */
+        private static final int BUCKETS = 8 + 60 * 8;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sum = new LongAdder();
+
+        Histogram() {
+            // Created with its endpoint
+        }
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            counts.incrementAndGet(index(value));
+            count.increment();
+            sum.add(value);
+        }
+
+        static int index(long value) {
+            if (value < 8) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - 3)) & 7;
+            return (exponent - 2) * 8 + sub;
+        }
+
+        /** Returns the largest value which falls in the given bucket. */
+        static long upperBound(int index) {
+            if (index < 8) {
+                return index;
+            }
+            int exponent = index / 8 + 2;
+            int shift = exponent - 3;
+            long lower = (8L + index % 8) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile in nanoseconds, or 0 if nothing was recorded.
+         *
+         * @param percentile between 0 and 100
+         */
+        public long getPercentile(double percentile) {
+            long[] snapshot = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                n += snapshot[i];
+            }
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+    }
+
+}
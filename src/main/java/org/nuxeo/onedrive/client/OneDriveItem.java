@@ -30,6 +30,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @since 1.0
@@ -58,6 +61,16 @@ public abstract class OneDriveItem extends OneDriveResource {
 
     public abstract Metadata getMetadata(OneDriveExpand... expand) throws OneDriveAPIException;
 
+    /**
+     * Gets the metadata with only the selected properties, see {@link OneDriveSelect}. Items which don't support
+     * selection return all properties.
+     *
+     * @since 3.6
+     */
+    public Metadata getMetadata(Set<OneDriveSelect> selects, OneDriveExpand... expand) throws OneDriveAPIException {
+        return getMetadata(expand);
+    }
+
     public OneDriveThumbnailSet.Metadata getThumbnailSet() throws OneDriveAPIException {
         try {
             Iterator<OneDriveThumbnailSet.Metadata> iterator = getThumbnailSets().iterator();
@@ -90,6 +103,7 @@ public abstract class OneDriveItem extends OneDriveResource {
             url = CREATE_SHARE_URL.build(getApi().getBaseURL(), getId());
         }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "POST");
+        request.setTemplate(isRoot() ? CREATE_ROOT_SHARE_URL : CREATE_SHARE_URL);
         JsonObject jsonObject = new JsonObject();
         jsonObject.add("requireSignIn", false);
         jsonObject.add("sendInvitation", true);
@@ -111,6 +125,16 @@ public abstract class OneDriveItem extends OneDriveResource {
         return oneDrivePermission.new Metadata(response.getContent());
     }
 
+    /**
+     * Shares the item on the given executor.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<OneDrivePermission.Metadata> createShareAsync(Executor executor,
+            List<String> sharedWith) {
+        return OneDriveAsync.supply(executor, () -> createShare(sharedWith));
+    }
+
     public OneDrivePermission.Metadata createSharedLink(OneDriveSharingLink.Type type) throws OneDriveAPIException {
         URL url;
         if (isRoot()) {
@@ -119,6 +143,7 @@ public abstract class OneDriveItem extends OneDriveResource {
             url = CREATE_SHARED_LINK_URL.build(getApi().getBaseURL(), getId());
         }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "POST");
+        request.setTemplate(isRoot() ? CREATE_SHARED_LINK_ROOT_URL : CREATE_SHARED_LINK_URL);
 
         request.setBody(new JsonObject().add("type", type.getType()));
         OneDriveJsonResponse response = request.send();
@@ -140,14 +165,43 @@ public abstract class OneDriveItem extends OneDriveResource {
             url = PERMISSIONS_ITEM_URL.build(getApi().getBaseURL(), getId());
         }
 
-        return () -> new OneDrivePermissionIterator(getApi(), url);
+        URLTemplate template = isRoot() ? PERMISSIONS_ROOT_ITEM_URL : PERMISSIONS_ITEM_URL;
+        return () -> new OneDrivePermissionIterator(getApi(), url, template);
     }
 
     public void deleteItem() throws OneDriveAPIException {
-        URL url = ITEMS_URL.build(getApi().getBaseURL(), getId());
+        URL url = getItemURL();
 
         OneDriveRequest request = new OneDriveRequest(getApi(), url, "DELETE");
-        request.send();
+        request.setTemplate(ITEMS_URL);
+        request.send().close();
+        invalidatePaths();
+    }
+
+    /**
+     * Forgets the paths of this item and its descendants after it was renamed, moved or deleted.
+     */
+    void invalidatePaths() {
+        OneDrivePathCache cache = getApi().getPathCache();
+        if (cache != null) {
+            cache.invalidateId(getId());
+        }
+    }
+
+    URL getItemURL() {
+        return ITEMS_URL.build(getApi().getBaseURL(), getId());
+    }
+
+    /**
+     * Deletes the item on the given executor.
+     *
+     * @since 3.6
+     */
+    public CompletableFuture<Void> deleteItemAsync(Executor executor) {
+        return OneDriveAsync.supply(executor, () -> {
+            deleteItem();
+            return null;
+        });
     }
 
     /**
@@ -159,17 +213,17 @@ public abstract class OneDriveItem extends OneDriveResource {
 
         private String eTag;
 
-        private OneDriveIdentitySet createdBy;
+        private Lazy<OneDriveIdentitySet> createdBy;
 
-        private ZonedDateTime createdDateTime;
+        private Lazy<ZonedDateTime> createdDateTime;
 
-        private OneDriveIdentitySet lastModifiedBy;
+        private Lazy<OneDriveIdentitySet> lastModifiedBy;
 
-        private ZonedDateTime lastModifiedDateTime;
+        private Lazy<ZonedDateTime> lastModifiedDateTime;
 
         private long size;
 
-        private OneDriveFolder.Reference parentReference;
+        private Lazy<OneDriveFolder.Reference> parentReference;
 
         private String webUrl;
 
@@ -177,10 +231,20 @@ public abstract class OneDriveItem extends OneDriveResource {
 
         private boolean deleted;
 
-        private List<OneDriveThumbnailSet.Metadata> thumbnailSets = Collections.emptyList();
+        /** Not initialized here, parsing happens in super constructor before field initializers. */
+        private Lazy<List<OneDriveThumbnailSet.Metadata>> thumbnailSets;
 
         public Metadata(JsonObject json) {
             super(json);
+            if (!getApi().isLazyMetadata()) {
+                // Once all members are parsed, thumbnail sets need the item id
+                decode(createdBy);
+                decode(createdDateTime);
+                decode(lastModifiedBy);
+                decode(lastModifiedDateTime);
+                decode(parentReference);
+                decode(thumbnailSets);
+            }
         }
 
         public String getName() {
@@ -192,27 +256,30 @@ public abstract class OneDriveItem extends OneDriveResource {
         }
 
         public OneDriveIdentitySet getCreatedBy() {
-            return createdBy;
+            return get(createdBy);
         }
 
         public ZonedDateTime getCreatedDateTime() {
-            return createdDateTime;
+            return get(createdDateTime);
         }
 
         public OneDriveIdentitySet getLastModifiedBy() {
-            return lastModifiedBy;
+            return get(lastModifiedBy);
         }
 
         public ZonedDateTime getLastModifiedDateTime() {
-            return lastModifiedDateTime;
+            return get(lastModifiedDateTime);
         }
 
         public long getSize() {
             return size;
         }
 
+        /**
+         * Returns the reference to the parent folder, or null for the root of the drive.
+         */
         public OneDriveFolder.Reference getParentReference() {
-            return parentReference;
+            return get(parentReference);
         }
 
         public String getWebUrl() {
@@ -228,11 +295,12 @@ public abstract class OneDriveItem extends OneDriveResource {
         }
 
         public OneDriveThumbnailSet.Metadata getThumbnailSet() {
-            return thumbnailSets.stream().findFirst().orElse(null);
+            return getThumbnailSets().stream().findFirst().orElse(null);
         }
 
         List<OneDriveThumbnailSet.Metadata> getThumbnailSets() {
-            return Collections.unmodifiableList(thumbnailSets);
+            List<OneDriveThumbnailSet.Metadata> sets = get(thumbnailSets);
+            return sets == null ? Collections.emptyList() : Collections.unmodifiableList(sets);
         }
 
         @Override
@@ -246,20 +314,17 @@ public abstract class OneDriveItem extends OneDriveResource {
                 } else if ("eTag".equals(memberName)) {
                     eTag = value.asString();
                 } else if ("createdBy".equals(memberName)) {
-                    createdBy = new OneDriveIdentitySet(value.asObject());
+                    createdBy = lazy(value, v -> new OneDriveIdentitySet(v.asObject()));
                 } else if ("createdDateTime".equals(memberName)) {
-                    createdDateTime = ZonedDateTime.parse(value.asString());
+                    createdDateTime = lazy(value, v -> ZonedDateTime.parse(v.asString()));
                 } else if ("lastModifiedBy".equals(memberName)) {
-                    lastModifiedBy = new OneDriveIdentitySet(value.asObject());
+                    lastModifiedBy = lazy(value, v -> new OneDriveIdentitySet(v.asObject()));
                 } else if ("lastModifiedDateTime".equals(memberName)) {
-                    lastModifiedDateTime = ZonedDateTime.parse(value.asString());
+                    lastModifiedDateTime = lazy(value, v -> ZonedDateTime.parse(v.asString()));
                 } else if ("size".equals(memberName)) {
                     size = value.asLong();
                 } else if ("parentReference".equals(memberName)) {
-                    JsonObject valueObject = value.asObject();
-                    String id = valueObject.get("id").asString();
-                    OneDriveFolder parentFolder = new OneDriveFolder(getApi(), id);
-                    parentReference = parentFolder.new Reference(valueObject);
+                    parentReference = lazy(value, this::parseParentReference);
                 } else if ("webUrl".equals(memberName)) {
                     webUrl = value.asString();
                 } else if ("description".equals(memberName)) {
@@ -267,21 +332,33 @@ public abstract class OneDriveItem extends OneDriveResource {
                 } else if ("deleted".equals(memberName)) {
                     deleted = true;
                 } else if ("thumbnailSets".equals(memberName)) {
-                    parseThumbnailsMember(value.asArray());
+                    thumbnailSets = lazy(value, this::parseThumbnailsMember);
                 }
             } catch (ParseException e) {
                 throw new OneDriveRuntimeException("Parse failed, maybe a bug in client.", e);
             }
         }
 
-        private void parseThumbnailsMember(JsonArray thumbnails) {
-            thumbnailSets = new ArrayList<>(thumbnails.size());
-            for (JsonValue value : thumbnails) {
-                JsonObject thumbnail = value.asObject();
+        private OneDriveFolder.Reference parseParentReference(JsonValue value) {
+            JsonObject valueObject = value.asObject();
+            JsonValue id = valueObject.get("id");
+            if (id == null || id.isNull()) {
+                // The root of the drive has a reference with only the drive id, it has no parent
+                return null;
+            }
+            return new OneDriveFolder(getApi(), id.asString()).new Reference(valueObject);
+        }
+
+        private List<OneDriveThumbnailSet.Metadata> parseThumbnailsMember(JsonValue value) {
+            JsonArray thumbnails = value.asArray();
+            List<OneDriveThumbnailSet.Metadata> thumbnailSets = new ArrayList<>(thumbnails.size());
+            for (JsonValue thumbnailValue : thumbnails) {
+                JsonObject thumbnail = thumbnailValue.asObject();
                 int id = Integer.parseInt(thumbnail.get("id").asString());
                 OneDriveThumbnailSet thumbnailSet = new OneDriveThumbnailSet(getApi(), getId(), id);
                 thumbnailSets.add(thumbnailSet.new Metadata(thumbnail));
             }
+            return thumbnailSets;
         }
 
         public boolean isFolder() {
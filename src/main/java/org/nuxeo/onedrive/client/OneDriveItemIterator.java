@@ -18,24 +18,36 @@
  */
 package org.nuxeo.onedrive.client;
 
+import java.io.Closeable;
 import java.net.URL;
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import com.eclipsesource.json.JsonObject;
 
 /**
+ * Since 3.6, the iterator should be closed when it is not consumed until the end, and must be when it is streaming.
+ *
  * @since 1.0
  */
-public class OneDriveItemIterator implements Iterator<OneDriveItem.Metadata> {
+public class OneDriveItemIterator implements Iterator<OneDriveItem.Metadata>, Closeable {
 
     private final OneDriveAPI api;
 
     private final JsonObjectIterator jsonObjectIterator;
 
     public OneDriveItemIterator(OneDriveAPI api, URL url) {
+        this(api, url, null);
+    }
+
+    /**
+     * Constructs an iterator whose first page url is built from the given template, for metrics.
+     */
+    OneDriveItemIterator(OneDriveAPI api, URL url, URLTemplate template) {
         this.api = Objects.requireNonNull(api);
-        this.jsonObjectIterator = new JsonObjectIterator(api, url) {
+        this.jsonObjectIterator = new JsonObjectIterator(api, url, template) {
 
             @Override
             protected void onResponse(JsonObject response) {
@@ -45,6 +57,30 @@ public class OneDriveItemIterator implements Iterator<OneDriveItem.Metadata> {
         };
     }
 
+    /**
+     * Fetches up to the given number of pages ahead on the executor while the current page is consumed.
+     *
+     * @return this iterator
+     * @since 3.6
+     */
+    public OneDriveItemIterator setPrefetch(int pages, Executor executor) {
+        jsonObjectIterator.setPrefetch(pages, executor);
+        return this;
+    }
+
+    /**
+     * Reads items from the response stream one at a time instead of reading each page as a whole, which bounds the
+     * memory used by large pages. The connection is held while a page is consumed, so the iterator, or the stream
+     * created from it, must be closed when iteration is stopped early.
+     *
+     * @return this iterator
+     * @since 3.6
+     */
+    public OneDriveItemIterator setStreaming(boolean streaming) {
+        jsonObjectIterator.setStreaming(streaming);
+        return this;
+    }
+
     @Override
     public boolean hasNext() throws OneDriveRuntimeException {
         return jsonObjectIterator.hasNext();
@@ -52,7 +88,24 @@ public class OneDriveItemIterator implements Iterator<OneDriveItem.Metadata> {
 
     @Override
     public OneDriveItem.Metadata next() throws OneDriveRuntimeException {
-        JsonObject nextObject = jsonObjectIterator.next();
+        return toMetadata(api, jsonObjectIterator.next());
+    }
+
+    /**
+     * Returns a stream over the remaining items, closing the stream closes this iterator. The stream splits at page
+     * boundaries for parallel processing. The iterator must not be used once the stream is created.
+     *
+     * @since 3.6
+     */
+    public Stream<OneDriveItem.Metadata> stream() {
+        return stream(Long.MAX_VALUE);
+    }
+
+    Stream<OneDriveItem.Metadata> stream(long estimate) {
+        return JsonPageSpliterator.stream(jsonObjectIterator, json -> toMetadata(api, json), estimate);
+    }
+
+    static OneDriveItem.Metadata toMetadata(OneDriveAPI api, JsonObject nextObject) {
         String id = nextObject.get("id").asString();
 
         OneDriveItem.Metadata nextMetadata;
@@ -68,6 +121,16 @@ public class OneDriveItemIterator implements Iterator<OneDriveItem.Metadata> {
         return nextMetadata;
     }
 
+    /**
+     * Releases the page being read and cancels prefetching.
+     *
+     * @since 3.6
+     */
+    @Override
+    public void close() {
+        jsonObjectIterator.close();
+    }
+
     /**
      * @since 1.1
      */
@@ -19,8 +19,11 @@
 package org.nuxeo.onedrive.client;
 
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
 
 /**
  * @since 1.0
@@ -43,4 +46,77 @@ public abstract class OneDriveJsonObject {
         }
     }
 
+    /**
+     * Returns a member whose decoding can be deferred until its first access, for members which are costly to decode
+     * and often not read, such as dates or nested objects. Objects decode their members with {@link #decode(Lazy)}
+     * once parsed unless laziness is enabled, see {@link OneDriveAPI#isLazyMetadata()}.
+     *
+     * @since 3.6
+     */
+    protected static <T> Lazy<T> lazy(JsonValue value, Function<JsonValue, T> decoder) {
+        return new Lazy<>(value, decoder);
+    }
+
+    /**
+     * Returns the decoded value of a lazy member, or null if the member was absent.
+     *
+     * @since 3.6
+     */
+    protected static <T> T get(Lazy<T> lazy) {
+        return lazy == null ? null : lazy.get();
+    }
+
+    /**
+     * Decodes a lazy member now, if present, so that invalid values are reported when the object is built.
+     *
+     * @since 3.6
+     */
+    protected static void decode(Lazy<?> lazy) {
+        get(lazy);
+    }
+
+    /**
+     * A raw member value which is decoded and cached on first access. Concurrent first accesses may decode the value
+     * more than once, each of them returns an equal value. Decoding errors are thrown as
+     * {@link OneDriveRuntimeException}.
+     *
+     * @since 3.6
+     */
+    protected static final class Lazy<T> implements Supplier<T> {
+
+        private final JsonValue value;
+
+        private final Function<JsonValue, T> decoder;
+
+        private volatile T decoded;
+
+        /** Whether the value was decoded, decoded values may be null. */
+        private volatile boolean done;
+
+        Lazy(JsonValue value, Function<JsonValue, T> decoder) {
+            this.value = value;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public T get() {
+            if (done) {
+                return decoded;
+            }
+            T result;
+            try {
+                result = decoder.apply(value);
+            } catch (OneDriveRuntimeException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // Values of the wrong type, invalid dates or numbers
+                throw new OneDriveRuntimeException("Parse failed, maybe a bug in client.", e);
+            }
+            decoded = result;
+            done = true;
+            return result;
+        }
+
+    }
+
 }
@@ -19,8 +19,9 @@
 package org.nuxeo.onedrive.client;
 
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.eclipsesource.json.JsonObject;
 
@@ -49,10 +50,24 @@ public class OneDriveJsonRequest extends AbstractRequest<OneDriveJsonResponse> {
     }
 
     @Override
-    protected OneDriveJsonResponse createResponse(HttpURLConnection connection) throws OneDriveAPIException {
+    protected OneDriveJsonResponse createResponse(OneDriveConnection connection) throws OneDriveAPIException {
         return new OneDriveJsonResponse(connection);
     }
 
+    /**
+     * Sends the request on the given executor, the future completes once the JSON body is read.
+     *
+     * @since 3.6
+     */
+    @Override
+    public CompletableFuture<OneDriveJsonResponse> sendAsync(Executor executor) {
+        return OneDriveAsync.supply(executor, () -> {
+            OneDriveJsonResponse response = send();
+            response.getContent();
+            return response;
+        });
+    }
+
     public void setBody(JsonObject body) {
         setBody(body.toString());
     }
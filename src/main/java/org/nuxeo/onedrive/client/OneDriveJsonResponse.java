@@ -20,7 +20,9 @@ package org.nuxeo.onedrive.client;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 
 import com.eclipsesource.json.JsonObject;
 
@@ -31,10 +33,21 @@ public class OneDriveJsonResponse extends AbstractResponse<JsonObject> {
 
     private JsonObject json;
 
+    /**
+     * @deprecated since 3.6, use {@link #OneDriveJsonResponse(OneDriveConnection)} instead
+     */
+    @Deprecated
     public OneDriveJsonResponse(HttpURLConnection connection) throws OneDriveAPIException {
         super(connection);
     }
 
+    /**
+     * @since 3.6
+     */
+    public OneDriveJsonResponse(OneDriveConnection connection) throws OneDriveAPIException {
+        super(connection);
+    }
+
     /**
      * Gets the body as JSON object. Once this method is called, the response will be disconnected.
      */
@@ -44,12 +57,32 @@ public class OneDriveJsonResponse extends AbstractResponse<JsonObject> {
             return json;
         }
         try (InputStream body = getBody()) {
-            String jsonString = readStream(body);
-            json = JsonObject.readFrom(jsonString);
+            // Parse from the stream, the body is never copied into a string
+            json = JsonObject.readFrom(new InputStreamReader(body, StandardCharsets.UTF_8));
             return json;
         } catch (IOException e) {
             throw new OneDriveAPIException("Couldn't read the stream from OneDrive API.", e);
         }
     }
 
+    /**
+     * Reads the body as a page of a collection whose items are parsed while they are iterated. Closing the returned
+     * reader closes the response.
+     *
+     * @since 3.6
+     */
+    JsonPageReader readPage() throws OneDriveAPIException {
+        InputStream body = getBody();
+        try {
+            return new JsonPageReader(body);
+        } catch (IOException e) {
+            try {
+                body.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+            throw new OneDriveAPIException("Couldn't read the stream from OneDrive API.", e);
+        }
+    }
+
 }
@@ -0,0 +1,529 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.ParseException;
+
+/**
+ * A local index of the items below a folder, kept current by a {@link OneDriveDeltaSync} which it is the store of.
+ * Lookups by id, path, parent or name are answered from memory without network calls.
+ * <p>
+ * The index is persisted as a log of JSON lines: each commit appends the changed items followed by a commit line
+ * carrying the delta link, then forces the file to disk. When the index is opened again, the log is replayed up to its
+ * last commit line, changes of a commit which didn't complete are dropped. The log is compacted into a snapshot of
+ * the live items once it grows much larger than them.
+ * <p>
+ * Lookups only trust the index if a round completed recently enough, see {@link #setMaxStaleness(long, TimeUnit)}.
+ * Otherwise they fall back to a live request. Names are compared without case, as the service does.
+ *
+ * @since 3.6
+ */
+public class OneDriveMetadataIndex implements OneDriveDeltaStore, Closeable {
+
+    private static final URLTemplate GET_BY_PATH_ROOT_URL = new URLTemplate("/drive/root:/%s");
+
+    private static final URLTemplate GET_BY_PATH_URL = new URLTemplate("/drive/items/%s:/%s");
+
+    /** Lines of the log beyond which it is compacted, when they outnumber the live items twice. */
+    private static final int COMPACTION_THRESHOLD = 10000;
+
+    private static final int NOT_FOUND = 404;
+
+    private final OneDriveFolder folder;
+
+    private final Path file;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Item JSON by id, only with the members the index keeps. */
+    private final Map<String, JsonObject> items = new HashMap<>();
+
+    /** Child ids by lower case name, by parent id. */
+    private final Map<String, Map<String, String>> children = new HashMap<>();
+
+    /** Item ids by lower case name. */
+    private final Map<String, Set<String>> names = new HashMap<>();
+
+    private String rootId;
+
+    private String link;
+
+    /** Time of the last complete round, 0 if there was none since the last resync. */
+    private long syncTime;
+
+    private long maxStaleness = TimeUnit.MINUTES.toMillis(5);
+
+    private long logLines;
+
+    private FileChannel log;
+
+    /**
+     * Opens the index stored in the given file, it is created if it doesn't exist.
+     */
+    public OneDriveMetadataIndex(OneDriveFolder folder, Path file) throws IOException {
+        this.folder = Objects.requireNonNull(folder);
+        this.file = Objects.requireNonNull(file);
+        rootId = folder.isRoot() ? null : folder.getId();
+        boolean complete = true;
+        if (Files.exists(file)) {
+            complete = replay();
+        }
+        if (complete) {
+            log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } else {
+            // Drop the changes of the interrupted commit
+            compact();
+        }
+    }
+
+    /**
+     * Sets how long after the last complete round the index answers lookups, 5 minutes by default.
+     */
+    public void setMaxStaleness(long duration, TimeUnit unit) {
+        maxStaleness = unit.toMillis(duration);
+    }
+
+    /**
+     * Returns whether a round completed within the max staleness, lookups are otherwise sent to the service.
+     */
+    public boolean isFresh() {
+        lock.readLock().lock();
+        try {
+            return syncTime > 0 && System.currentTimeMillis() - syncTime <= maxStaleness;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of items in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the item with the given id, or null if it doesn't exist.
+     */
+    public OneDriveItem.Metadata getById(String id) throws OneDriveAPIException {
+        if (!isFresh()) {
+            return getLive(OneDriveItem.ITEMS_URL.build(folder.getApi().getBaseURL(), id), OneDriveItem.ITEMS_URL);
+        }
+        lock.readLock().lock();
+        try {
+            return toMetadata(items.get(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the item at the given path relative to the folder of the index, or null if it doesn't exist.
+     */
+    public OneDriveItem.Metadata getByPath(String path) throws OneDriveAPIException {
+        String relativePath = path.startsWith("/") ? path.substring(1) : path;
+        if (!isFresh()) {
+            String baseURL = folder.getApi().getBaseURL();
+            if (folder.isRoot()) {
+                return getLive(GET_BY_PATH_ROOT_URL.build(baseURL, relativePath), GET_BY_PATH_ROOT_URL);
+            }
+            return getLive(GET_BY_PATH_URL.build(baseURL, folder.getId(), relativePath), GET_BY_PATH_URL);
+        }
+        lock.readLock().lock();
+        try {
+            String id = rootId;
+            for (String name : relativePath.split("/")) {
+                if (name.isEmpty()) {
+                    continue;
+                }
+                Map<String, String> childIds = children.get(id);
+                id = childIds == null ? null : childIds.get(name.toLowerCase(Locale.ROOT));
+                if (id == null) {
+                    return null;
+                }
+            }
+            return toMetadata(items.get(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the children of the given folder.
+     */
+    public List<OneDriveItem.Metadata> getChildren(String folderId) throws OneDriveAPIException {
+        if (!isFresh()) {
+            List<OneDriveItem.Metadata> result = new ArrayList<>();
+            new OneDriveFolder(folder.getApi(), folderId).getChildren().forEach(result::add);
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, String> childIds = children.getOrDefault(folderId, Collections.emptyMap());
+            List<OneDriveItem.Metadata> result = new ArrayList<>(childIds.size());
+            for (String id : childIds.values()) {
+                result.add(toMetadata(items.get(id)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the items with the given name in the whole tree.
+     */
+    public List<OneDriveItem.Metadata> findByName(String name) throws OneDriveAPIException {
+        List<OneDriveItem.Metadata> result = new ArrayList<>();
+        if (!isFresh()) {
+            try {
+                for (OneDriveItem.Metadata item : folder.search(name)) {
+                    if (name.equalsIgnoreCase(item.getName())) {
+                        result.add(item);
+                    }
+                }
+            } catch (OneDriveRuntimeException e) {
+                throw new OneDriveAPIException("Couldn't search the items.", e);
+            }
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            for (String id : names.getOrDefault(name.toLowerCase(Locale.ROOT), Collections.emptySet())) {
+                result.add(toMetadata(items.get(id)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getLink() {
+        lock.readLock().lock();
+        try {
+            return link;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void commit(List<OneDriveItem.Metadata> changes, String link, boolean complete) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        List<JsonObject> records = new ArrayList<>(changes.size() + 1);
+        for (OneDriveItem.Metadata change : changes) {
+            JsonObject record = new JsonObject();
+            if (change.isDeleted()) {
+                record.add("delete", change.getId());
+            } else if (change.isFolder() || change.isFile()) {
+                record.add("put", toJson(change));
+            } else {
+                // The index only keeps files and folders
+                continue;
+            }
+            records.add(record);
+        }
+        JsonObject commit = new JsonObject().add("commit", link)
+                                            .add("complete", complete)
+                                            .add("time", System.currentTimeMillis());
+        records.add(commit);
+        for (JsonObject record : records) {
+            lines.append(record.toString()).append('\n');
+        }
+        lock.writeLock().lock();
+        try {
+            write(log, lines.toString());
+            records.forEach(this::apply);
+            logLines += records.size();
+            if (complete && logLines > COMPACTION_THRESHOLD && logLines > 2 * items.size()) {
+                log.close();
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void resync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            // Lookups go to the service until the full enumeration completes
+            JsonObject record = new JsonObject().add("resync", true);
+            write(log, record.toString() + '\n');
+            apply(record);
+            logLines++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the lines and forces them to disk, on failure the lines written so far are removed so that they are not
+     * taken by a later commit.
+     */
+    private static void write(FileChannel channel, String lines) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(size);
+            } catch (IOException te) {
+                e.addSuppressed(te);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replays the log and returns whether it ends with a complete commit line.
+     */
+    private boolean replay() throws IOException {
+        List<JsonObject> pending = new ArrayList<>();
+        boolean torn = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonObject record;
+                try {
+                    record = JsonObject.readFrom(line);
+                } catch (ParseException e) {
+                    // A line torn by a crash, only the last one can be
+                    torn = true;
+                    break;
+                }
+                pending.add(record);
+                if (record.get("commit") != null || record.get("resync") != null) {
+                    pending.forEach(this::apply);
+                    logLines += pending.size();
+                    pending.clear();
+                }
+            }
+        }
+        return pending.isEmpty() && !torn;
+    }
+
+    /**
+     * Rewrites the log as the live items followed by the last commit, then opens it for appending.
+     */
+    private void compact() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder lines = new StringBuilder();
+            for (JsonObject item : items.values()) {
+                lines.append(new JsonObject().add("put", item).toString()).append('\n');
+            }
+            if (link != null) {
+                lines.append(new JsonObject().add("commit", link).add("complete", syncTime > 0).add("time",
+                        syncTime).toString()).append('\n');
+            }
+            write(channel, lines.toString());
+            logLines = items.size() + (link == null ? 0 : 1);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void apply(JsonObject record) {
+        JsonValue value;
+        if ((value = record.get("put")) != null) {
+            JsonObject item = value.asObject();
+            String id = item.get("id").asString();
+            remove(id);
+            items.put(id, item);
+            String parentId = getParentId(item);
+            if (parentId == null && rootId == null) {
+                // The drive root is the only item without parent id, its reference only has the drive id if any
+                rootId = id;
+            }
+            String name = getLowerCaseName(item);
+            if (name != null) {
+                children.computeIfAbsent(parentId, key -> new HashMap<>()).put(name, id);
+                names.computeIfAbsent(name, key -> new HashSet<>()).add(id);
+            }
+        } else if ((value = record.get("delete")) != null) {
+            delete(value.asString());
+        } else if ((value = record.get("commit")) != null) {
+            link = value.asString();
+            if (record.get("complete").asBoolean()) {
+                syncTime = record.get("time").asLong();
+            }
+        } else if (record.get("resync") != null) {
+            items.clear();
+            children.clear();
+            names.clear();
+            syncTime = 0;
+        }
+    }
+
+    /**
+     * Removes the item and the items below it, the service doesn't always report the deletion of each descendant.
+     */
+    private void delete(String id) {
+        Deque<String> ids = new ArrayDeque<>();
+        ids.push(id);
+        while (!ids.isEmpty()) {
+            String current = ids.pop();
+            remove(current);
+            Map<String, String> childIds = children.remove(current);
+            if (childIds != null) {
+                childIds.values().forEach(ids::push);
+            }
+        }
+    }
+
+    /**
+     * Removes the item only, its children are kept when it is moved or renamed.
+     */
+    private void remove(String id) {
+        JsonObject item = items.remove(id);
+        if (item == null) {
+            return;
+        }
+        String name = getLowerCaseName(item);
+        if (name != null) {
+            Map<String, String> siblings = children.get(getParentId(item));
+            if (siblings != null && id.equals(siblings.get(name))) {
+                siblings.remove(name);
+            }
+            Set<String> ids = names.get(name);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+    }
+
+    private static String getParentId(JsonObject item) {
+        JsonValue parent = item.get("parentReference");
+        JsonValue id = parent == null ? null : parent.asObject().get("id");
+        return id == null ? null : id.asString();
+    }
+
+    private static String getLowerCaseName(JsonObject item) {
+        JsonValue name = item.get("name");
+        return name == null ? null : name.asString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Keeps the members the index answers with.
+     */
+    private static JsonObject toJson(OneDriveItem.Metadata metadata) {
+        JsonObject json = new JsonObject().add("id", metadata.getId());
+        if (metadata.getName() != null) {
+            json.add("name", metadata.getName());
+        }
+        json.add("size", metadata.getSize());
+        if (metadata.getETag() != null) {
+            json.add("eTag", metadata.getETag());
+        }
+        ZonedDateTime lastModified = metadata.getLastModifiedDateTime();
+        if (lastModified != null) {
+            json.add("lastModifiedDateTime", lastModified.toString());
+        }
+        OneDriveFolder.Reference parent = metadata.getParentReference();
+        if (parent != null) {
+            JsonObject parentJson = new JsonObject();
+            if (parent.getId() != null) {
+                parentJson.add("id", parent.getId());
+            }
+            json.add("parentReference", parentJson);
+        }
+        if (metadata.isFolder()) {
+            json.add("folder", new JsonObject().add("childCount", metadata.asFolder().getChildCount()));
+        } else if (metadata.isFile()) {
+            JsonObject file = new JsonObject();
+            String cTag = metadata.asFile().getCTag();
+            if (cTag != null) {
+                json.add("cTag", cTag);
+            }
+            json.add("file", file);
+        }
+        return json;
+    }
+
+    private OneDriveItem.Metadata toMetadata(JsonObject item) {
+        return item == null ? null : OneDriveItemIterator.toMetadata(folder.getApi(), item);
+    }
+
+    private OneDriveItem.Metadata getLive(URL url, URLTemplate template) throws OneDriveAPIException {
+        try {
+            OneDriveJsonRequest request = new OneDriveJsonRequest(folder.getApi(), url, "GET");
+            request.setTemplate(template);
+            return OneDriveItemIterator.toMetadata(folder.getApi(), request.send().getContent());
+        } catch (OneDriveAPIException e) {
+            if (e.getResponseCode() == NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+}
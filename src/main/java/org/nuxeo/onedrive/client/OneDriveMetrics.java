@@ -0,0 +1,73 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+/**
+ * Receives the timings of requests sent to the API. Requests are grouped by HTTP method and endpoint: the
+ * {@link URLTemplate} the url was built from, such as {@code /drive/items/%s/children}, or the scheme and host for
+ * urls given by the service such as next links and download urls.
+ * <p>
+ * Methods are called on the threads sending requests and must be cheap and thread safe. Durations are in nanoseconds.
+ * The metrics are set on the API with {@link AbstractOneDriveAPI#setMetrics(OneDriveMetrics)}, see
+ * {@link OneDriveInMemoryMetrics} for a built-in implementation.
+ *
+ * @since 3.6
+ */
+public interface OneDriveMetrics {
+
+    /** Metrics which record nothing, used by APIs which don't set any. */
+    OneDriveMetrics NONE = new OneDriveMetrics() {
+    };
+
+    /**
+     * Called once the connection was opened and the request sent, body included.
+     *
+     * @param bytesSent the bytes of request body written, chunked bodies included
+     * @param nanos the time spent since this attempt started
+     */
+    default void onConnect(String method, String endpoint, long bytesSent, long nanos) {
+    }
+
+    /**
+     * Called once the status of the response was received, or the request failed with a network error.
+     *
+     * @param responseCode the status of the response, or -1 on network error
+     * @param nanos the time spent since this attempt started
+     */
+    default void onFirstByte(String method, String endpoint, int responseCode, long nanos) {
+    }
+
+    /**
+     * Called when a throttled request is about to be sent again.
+     */
+    default void onRetry(String method, String endpoint, int responseCode) {
+    }
+
+    /**
+     * Called once the response is closed, its body was read or dropped.
+     *
+     * @param bytesReceived the bytes of body read by the caller
+     * @param bodyNanos the time spent since the status of the response was received
+     * @param totalNanos the time spent since the request was sent, retries and waits included
+     */
+    default void onClose(String method, String endpoint, int responseCode, long bytesReceived, long bodyNanos,
+            long totalNanos) {
+    }
+
+}
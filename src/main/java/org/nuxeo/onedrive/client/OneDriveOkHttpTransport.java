@@ -0,0 +1,232 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * A transport based on OkHttp, with its own pool of connections. HTTP/2 is negotiated with TLS ALPN when the JVM
+ * supports it (Java 8u252 or later), so concurrent requests to the API are multiplexed over a single connection.
+ * <p>
+ * OkHttp is an optional dependency, it must be added to the classpath to use this transport. Close the transport to
+ * release pooled connections, a client given to the transport is left to its owner.
+ *
+ * @since 3.6
+ */
+public class OneDriveOkHttpTransport implements OneDriveTransport, Closeable {
+
+    private final OkHttpClient client;
+
+    /** Whether the pool and dispatcher were created by this transport, it only shuts down its own. */
+    private final boolean ownsClient;
+
+    /**
+     * Creates a transport keeping at most 5 idle connections alive for 5 minutes.
+     */
+    public OneDriveOkHttpTransport() {
+        this(5, 5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param maxIdleConnections how many idle connections are kept in the pool, with HTTP/2 a single connection
+     *            carries all the requests to a host
+     * @param keepAliveDuration how long an idle connection is kept in the pool
+     */
+    public OneDriveOkHttpTransport(int maxIdleConnections, long keepAliveDuration, TimeUnit timeUnit) {
+        this(new OkHttpClient.Builder().connectionPool(
+                new ConnectionPool(maxIdleConnections, keepAliveDuration, timeUnit)).build(), true);
+    }
+
+    /**
+     * Creates a transport from a configured client, its redirect policy is overridden as requests handle redirects.
+     * The transport shares the pool and dispatcher of the client, closing it doesn't shut them down.
+     */
+    public OneDriveOkHttpTransport(OkHttpClient client) {
+        this(client, false);
+    }
+
+    private OneDriveOkHttpTransport(OkHttpClient client, boolean ownsClient) {
+        this.client = Objects.requireNonNull(client).newBuilder().followRedirects(false).followSslRedirects(false)
+                                                     .build();
+        this.ownsClient = ownsClient;
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the number of open connections in the pool, idle or not.
+     */
+    public int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    public int getIdleConnectionCount() {
+        return client.connectionPool().idleConnectionCount();
+    }
+
+    @Override
+    public OneDriveConnection openConnection(URL url, String method, int timeout) {
+        OkHttpClient callClient = client;
+        if (timeout > 0) {
+            // Derived clients share the pool and dispatcher of the original one
+            callClient = client.newBuilder()
+                               .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                               .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                               .writeTimeout(timeout, TimeUnit.MILLISECONDS)
+                               .build();
+        }
+        return new Connection(callClient, url, method);
+    }
+
+    @Override
+    public void close() {
+        if (ownsClient) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    private static class Connection implements OneDriveConnection {
+
+        private final OkHttpClient client;
+
+        private final String method;
+
+        private final Request.Builder request;
+
+        private Response response;
+
+        private Connection(OkHttpClient client, URL url, String method) {
+            this.client = client;
+            this.method = method;
+            this.request = new Request.Builder().url(url);
+        }
+
+        @Override
+        public void addRequestProperty(String key, String value) {
+            request.addHeader(key, value);
+        }
+
+        @Override
+        public long send(InputStream body, long length) throws IOException {
+            StreamRequestBody streamBody = null;
+            RequestBody requestBody = null;
+            if (body != null) {
+                requestBody = streamBody = new StreamRequestBody(body, length);
+            } else if (requiresRequestBody(method)) {
+                requestBody = RequestBody.create(null, new byte[0]);
+            }
+            Call call = client.newCall(request.method(method, requestBody).build());
+            response = call.execute();
+            return streamBody == null ? 0 : streamBody.written;
+        }
+
+        /**
+         * OkHttp rejects these methods without body, as its own check is internal API.
+         */
+        private static boolean requiresRequestBody(String method) {
+            return "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method)
+                    || "PROPPATCH".equals(method) || "REPORT".equals(method);
+        }
+
+        @Override
+        public int getResponseCode() {
+            return response.code();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return response.header(name);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return response.body().byteStream();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return response.body() == null ? null : response.body().byteStream();
+        }
+
+        @Override
+        public void disconnect() {
+            if (response != null) {
+                response.close();
+            }
+        }
+
+    }
+
+    /**
+     * Streams the body to the connection, the Content-Type header is set by the request.
+     */
+    private static class StreamRequestBody extends RequestBody {
+
+        private final InputStream body;
+
+        private final long length;
+
+        private long written;
+
+        private StreamRequestBody(InputStream body, long length) {
+            this.body = body;
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return null;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isOneShot() {
+            // The stream can't be read twice, OkHttp must not retry the request by itself
+            return true;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            written = StreamCopier.copy(body, sink.outputStream());
+        }
+
+    }
+
+}
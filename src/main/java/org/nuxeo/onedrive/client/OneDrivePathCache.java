@@ -0,0 +1,340 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Remembers the id of the items read by path, so that {@link OneDriveFolder#getByPath()} and
+ * {@link OneDriveFile#getByPath()} read them again by id instead of letting the service resolve the path. Paths are
+ * compared without case and without leading or trailing slashes, as the service does.
+ * <p>
+ * Entries expire after a time to live, and the least recently used one is evicted once the cache is full. Renames,
+ * moves and deletions made through this client invalidate the entries of the item and of its descendants, as well as
+ * the changes read by a {@link OneDriveDeltaSync}. Changes made by other clients are only noticed when the item read by
+ * id doesn't have the name or the parent path of the path anymore, or is gone, in which case the path is resolved
+ * again.
+ * <p>
+ * The cache is set with {@link AbstractOneDriveAPI#setPathCache(OneDrivePathCache)} and must not be shared between
+ * API instances of different drives.
+ *
+ * @since 3.6
+ */
+public class OneDrivePathCache {
+
+    /** Parent paths are given from the drive root, such as {@code /drive/root:/Documents}. */
+    private static final String ROOT_PATH = "root:";
+
+    private final int maxEntries;
+
+    private final long ttl;
+
+    private final LongSupplier clock;
+
+    private final Map<String, CacheEntry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache of 10000 paths kept 10 minutes.
+     */
+    public OneDrivePathCache() {
+        this(10000, 10, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of paths kept
+     * @param ttl how long a path is kept after it was resolved
+     */
+    public OneDrivePathCache(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, unit.toNanos(ttl), System::nanoTime);
+    }
+
+    OneDrivePathCache(int maxEntries, long ttl, LongSupplier clock) {
+        if (maxEntries < 1 || ttl <= 0) {
+            throw new IllegalArgumentException("Max entries and time to live must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        // Access order makes the map iterate from the least recently used entry
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > OneDrivePathCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the id of the item at the given path, or null if it isn't cached or expired.
+     */
+    public String get(String path) {
+        String key = normalize(path);
+        synchronized (this) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (clock.getAsLong() - entry.resolved >= ttl) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.id;
+        }
+    }
+
+    public void put(String path, String id) {
+        String key = normalize(path);
+        synchronized (this) {
+            entries.put(key, new CacheEntry(id, clock.getAsLong()));
+        }
+    }
+
+    /**
+     * Removes the given path and the paths below it.
+     */
+    public void invalidate(String path) {
+        String key = normalize(path);
+        String prefix = key + '/';
+        synchronized (this) {
+            entries.keySet().removeIf(other -> other.equals(key) || key.isEmpty() || other.startsWith(prefix));
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Removes the paths of the given item and the paths below them, after the item was renamed, moved or deleted.
+     */
+    public void invalidateId(String id) {
+        Set<String> paths = new HashSet<>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, CacheEntry> entry = it.next();
+                if (entry.getValue().id.equals(id)) {
+                    paths.add(entry.getKey() + '/');
+                    it.remove();
+                }
+            }
+            if (!paths.isEmpty()) {
+                entries.keySet().removeIf(other -> paths.stream().anyMatch(other::startsWith));
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Removes the paths of changed items, for instance the changes of a delta round.
+     */
+    public void invalidateAll(Collection<? extends OneDriveItem.Metadata> changes) {
+        for (OneDriveItem.Metadata change : changes) {
+            invalidateId(change.getId());
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of paths read by id.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of paths resolved by the service, because they weren't cached, expired or stale.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of hits among lookups, or 0 if there was no lookup.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Reads the item at the given path by its cached id if any, else by path, and decodes it.
+     *
+     * @param pathURL the url resolving the path
+     * @param pathTemplate the template the url resolving the path was built from
+     */
+    <T> T getByPath(OneDriveAPI api, String path, URL pathURL, URLTemplate pathTemplate,
+            Function<JsonObject, T> decoder)
+            throws OneDriveAPIException {
+        String id = get(path);
+        if (id != null) {
+            JsonObject json = readById(api, id);
+            if (json != null && isAt(json, path)) {
+                hits.incrementAndGet();
+                return decoder.apply(json);
+            }
+            // The item or one of its ancestors was renamed, moved or deleted by another client
+            invalidateId(id);
+        }
+        misses.incrementAndGet();
+        JsonObject json = read(api, pathURL, pathTemplate);
+        JsonValue resolved = json.get("id");
+        if (resolved != null && resolved.isString()) {
+            put(path, resolved.asString());
+        }
+        return decoder.apply(json);
+    }
+
+    private static JsonObject readById(OneDriveAPI api, String id) throws OneDriveAPIException {
+        try {
+            return read(api, OneDriveItem.ITEMS_URL.build(api.getBaseURL(), id), OneDriveItem.ITEMS_URL);
+        } catch (OneDriveAPIException e) {
+            if (e.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static JsonObject read(OneDriveAPI api, URL url, URLTemplate template) throws OneDriveAPIException {
+        OneDriveResponseCache responseCache = api.getResponseCache();
+        if (responseCache != null) {
+            return responseCache.get(api, url, template, Function.identity());
+        }
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, url, "GET");
+        request.setTemplate(template);
+        return request.send().getContent();
+    }
+
+    /**
+     * Returns whether the item read by id is still at the given path, both its name and the path of its parent must
+     * match as an ancestor may have been renamed or moved.
+     */
+    private static boolean isAt(JsonObject json, String path) {
+        String key = normalize(path);
+        int slash = key.lastIndexOf('/');
+        String last = key.substring(slash + 1);
+        if (last.isEmpty()) {
+            // The root has no name in the path
+            return true;
+        }
+        JsonValue name = json.get("name");
+        if (name == null || !name.isString() || !normalize(name.asString()).equals(last)) {
+            return false;
+        }
+        // An item without the path of its parent can't be trusted to be at the path
+        String parentPath = getParentPath(json);
+        return parentPath != null && parentPath.equals(slash < 0 ? "" : key.substring(0, slash));
+    }
+
+    /**
+     * Returns the normalized path of the parent relative to the drive root, or null if it isn't known.
+     */
+    private static String getParentPath(JsonObject json) {
+        JsonValue parent = json.get("parentReference");
+        JsonValue path = parent == null || !parent.isObject() ? null : parent.asObject().get("path");
+        if (path == null || !path.isString()) {
+            return null;
+        }
+        String value = path.asString();
+        int root = value.indexOf(ROOT_PATH);
+        if (root < 0) {
+            return null;
+        }
+        try {
+            // The path is percent-encoded, where a plus sign is not a space
+            String decoded = URLDecoder.decode(value.substring(root + ROOT_PATH.length()).replace("+", "%2B"),
+                    StandardCharsets.UTF_8.name());
+            return normalize(decoded);
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static String normalize(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static final class CacheEntry {
+
+        final String id;
+
+        final long resolved;
+
+        CacheEntry(String id, long resolved) {
+            this.id = id;
+            this.resolved = resolved;
+        }
+
+    }
+
+}
@@ -67,6 +67,7 @@ public class OneDrivePermission extends OneDriveResource {
             url = PERMISSIONS_URL.build(getApi().getBaseURL(), this.itemId, this.getPermissionId());
         }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "DELETE");
+        request.setTemplate(isRoot() ? PERMISSIONS_ROOT_URL : PERMISSIONS_URL);
         request.send();
 
     }
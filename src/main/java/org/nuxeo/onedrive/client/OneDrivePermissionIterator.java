@@ -20,22 +20,30 @@ package org.nuxeo.onedrive.client;
 
 import com.eclipsesource.json.JsonObject;
 
+import java.io.Closeable;
 import java.net.URL;
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
+ * Since 3.6, the iterator should be closed when it is not consumed until the end.
+ *
  * @since 2.x
  */
-public class OneDrivePermissionIterator implements Iterator<OneDrivePermission.Metadata> {
+public class OneDrivePermissionIterator implements Iterator<OneDrivePermission.Metadata>, Closeable {
 
     private final OneDriveAPI api;
 
     private final JsonObjectIterator jsonObjectIterator;
 
     public OneDrivePermissionIterator(OneDriveAPI api, URL url) {
+        this(api, url, null);
+    }
+
+    OneDrivePermissionIterator(OneDriveAPI api, URL url, URLTemplate template) {
         this.api = Objects.requireNonNull(api);
-        this.jsonObjectIterator = new JsonObjectIterator(api, url) {
+        this.jsonObjectIterator = new JsonObjectIterator(api, url, template) {
 
             @Override
             protected void onResponse(JsonObject response) {
@@ -52,7 +60,30 @@ public class OneDrivePermissionIterator implements Iterator<OneDrivePermission.M
 
     @Override
     public OneDrivePermission.Metadata next() throws OneDriveRuntimeException {
-        JsonObject nextObject = jsonObjectIterator.next();
+        return toMetadata(jsonObjectIterator.next());
+    }
+
+    /**
+     * Returns a stream over the remaining items, closing the stream closes this iterator. The stream splits at page
+     * boundaries for parallel processing. The iterator must not be used once the stream is created.
+     *
+     * @since 3.6
+     */
+    public Stream<OneDrivePermission.Metadata> stream() {
+        return JsonPageSpliterator.stream(jsonObjectIterator, this::toMetadata, Long.MAX_VALUE);
+    }
+
+    /**
+     * Releases the page being read.
+     *
+     * @since 3.6
+     */
+    @Override
+    public void close() {
+        jsonObjectIterator.close();
+    }
+
+    private OneDrivePermission.Metadata toMetadata(JsonObject nextObject) {
         String id = nextObject.get("id").asString();
 
         OneDrivePermission.Metadata nextMetadata;
@@ -0,0 +1,36 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+/**
+ * Receives the progress of a file transfer.
+ *
+ * @since 3.6
+ */
+@FunctionalInterface
+public interface OneDriveProgressListener {
+
+    /**
+     * @param transferred the number of bytes of the file acknowledged so far, including bytes from a resumed transfer
+     * @param total the size of the file
+     * @param bytesPerSecond the throughput of the current transfer
+     */
+    void onProgress(long transferred, long total, double bytesPerSecond);
+
+}
@@ -0,0 +1,247 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Spaces requests to a tenant with a token bucket whose rate adapts to throttling: it is halved when the service
+ * answers 429 or 503 and grows back linearly while requests succeed (additive increase, multiplicative decrease).
+ * When the service gives a {@code Retry-After} delay, all requests sharing the limiter wait for it.
+ * <p>
+ * A limiter is meant to be shared by every API instance working on a tenant, see {@link #forTenant(String)}, and set
+ * with {@link AbstractOneDriveAPI#setRateLimiter(OneDriveRateLimiter)}. Tenants are identified by the caller, for
+ * instance by their tenant or drive id: all accounts use the same base url, which doesn't tell tenants apart. Requests which would wait longer than the
+ * maximum wait are rejected with a {@link OneDriveAPIException}.
+ *
+ * @since 3.6
+ */
+public class OneDriveRateLimiter {
+
+    private static final Map<String, OneDriveRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    /** Several threads are throttled at once by a burst, the rate is decreased once per second at most. */
+    private static final long DECREASE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final double minRate;
+
+    private final double maxRate;
+
+    private final double burst;
+
+    private final long maxWait;
+
+    private final LongSupplier clock;
+
+    private final Sleeper sleeper;
+
+    private final AtomicLong permitted = new AtomicLong();
+
+    private final AtomicLong delayed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong throttled = new AtomicLong();
+
+    /** Permits per second. */
+    private double rate;
+
+    /** Available permits, negative when permits are reserved by waiting requests. */
+    private double tokens;
+
+    private long lastRefill;
+
+    private long lastDecrease;
+
+    private long lastSuccess;
+
+    private long pausedUntil;
+
+    /**
+     * Creates a limiter starting at 20 requests per second, adapting between 0.5 and 100 requests per second, with
+     * bursts of 20 requests and a maximum wait of 1 minute.
+     */
+    public OneDriveRateLimiter() {
+        this(20, 0.5, 100, 20, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    /**
+     * @param rate the initial rate in requests per second
+     * @param minRate the rate is never decreased below this one
+     * @param maxRate the rate is never increased above this one
+     * @param burst how many requests can be sent at once after an idle period
+     * @param maxWait the maximum wait of a request in milliseconds before it is rejected
+     */
+    public OneDriveRateLimiter(double rate, double minRate, double maxRate, int burst, long maxWait) {
+        this(rate, minRate, maxRate, burst, maxWait, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    OneDriveRateLimiter(double rate, double minRate, double maxRate, int burst, long maxWait, LongSupplier clock,
+            Sleeper sleeper) {
+        if (minRate <= 0 || rate < minRate || maxRate < rate || burst < 1 || maxWait < 0) {
+            throw new IllegalArgumentException("Rates must be positive and ordered, burst at least 1.");
+        }
+        this.rate = rate;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.burst = burst;
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(maxWait);
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.tokens = burst;
+        this.lastRefill = clock.getAsLong();
+        this.lastDecrease = lastRefill - DECREASE_INTERVAL;
+        this.lastSuccess = lastRefill;
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Returns the limiter shared by requests to the given tenant, creating it with default settings if needed. The
+     * limiter is kept until {@link #remove(String)} is called.
+     *
+     * @param tenantId an identifier of the tenant chosen by the caller, such as its tenant or drive id
+     */
+    public static OneDriveRateLimiter forTenant(String tenantId) {
+        return LIMITERS.computeIfAbsent(Objects.requireNonNull(tenantId), key -> new OneDriveRateLimiter());
+    }
+
+    /**
+     * Registers the limiter shared by requests to the given tenant, to use other settings than the default ones.
+     */
+    public static void register(String tenantId, OneDriveRateLimiter limiter) {
+        LIMITERS.put(Objects.requireNonNull(tenantId), Objects.requireNonNull(limiter));
+    }
+
+    /**
+     * Forgets the limiter of the given tenant, once the application stops working on it.
+     *
+     * @return the removed limiter, or null if there was none
+     */
+    public static OneDriveRateLimiter remove(String tenantId) {
+        return LIMITERS.remove(tenantId);
+    }
+
+    /**
+     * Waits until a request can be sent.
+     *
+     * @throws OneDriveAPIException if the request would wait longer than the maximum wait, or if interrupted
+     */
+    public void acquire() throws OneDriveAPIException {
+        long wait;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            refill(now);
+            long pause = Math.max(0, pausedUntil - now);
+            wait = tokens >= 1 ? pause : Math.max(pause, (long) ((1 - tokens) / rate * 1e9));
+            if (wait > maxWait) {
+                rejected.incrementAndGet();
+                throw new OneDriveAPIException("The request would wait " + TimeUnit.NANOSECONDS.toMillis(wait)
+                        + " ms for the client rate limit, more than the maximum wait.");
+            }
+            // Reserve the permit, requests arriving meanwhile wait behind this one
+            tokens -= 1;
+        }
+        if (wait <= 0) {
+            permitted.incrementAndGet();
+            return;
+        }
+        delayed.incrementAndGet();
+        try {
+            sleeper.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OneDriveAPIException("Interrupted while waiting for the client rate limit.", e);
+        }
+    }
+
+    /**
+     * Adapts the rate to the response of a request sent after {@link #acquire()}.
+     *
+     * @param retryAfter the delay in milliseconds asked by the service, or -1
+     */
+    public synchronized void onResponse(int responseCode, long retryAfter) {
+        long now = clock.getAsLong();
+        refill(now);
+        if (OneDriveRetryPolicy.isThrottling(responseCode)) {
+            throttled.incrementAndGet();
+            if (now - lastDecrease >= DECREASE_INTERVAL) {
+                rate = Math.max(minRate, rate / 2);
+                lastDecrease = now;
+            }
+            if (retryAfter > 0) {
+                pausedUntil = Math.max(pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(retryAfter));
+            }
+        } else if (responseCode < 500) {
+            // One more request per second for each second without throttling
+            double seconds = (now - Math.max(lastDecrease, lastSuccess)) / 1e9;
+            rate = Math.min(maxRate, rate + Math.max(0, seconds));
+            lastSuccess = now;
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * rate);
+        lastRefill = now;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns how many requests were sent without waiting.
+     */
+    public long getPermittedCount() {
+        return permitted.get();
+    }
+
+    /**
+     * Returns how many requests waited before being sent.
+     */
+    public long getDelayedCount() {
+        return delayed.get();
+    }
+
+    /**
+     * Returns how many requests were rejected because they would wait longer than the maximum wait.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns how many throttling responses were received.
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+
+        void sleep(long nanos) throws InterruptedException;
+
+    }
+
+}
@@ -18,7 +18,6 @@
  */
 package org.nuxeo.onedrive.client;
 
-import java.net.HttpURLConnection;
 import java.net.URL;
 
 /**
@@ -36,7 +35,7 @@ public class OneDriveRequest extends AbstractRequest<OneDriveResponse> {
     }
 
     @Override
-    protected OneDriveResponse createResponse(HttpURLConnection connection) throws OneDriveAPIException {
+    protected OneDriveResponse createResponse(OneDriveConnection connection) throws OneDriveAPIException {
         return new OneDriveResponse(connection);
     }
 
@@ -26,10 +26,21 @@ import java.net.HttpURLConnection;
  */
 public class OneDriveResponse extends AbstractResponse<InputStream> {
 
+    /**
+     * @deprecated since 3.6, use {@link #OneDriveResponse(OneDriveConnection)} instead
+     */
+    @Deprecated
     public OneDriveResponse(HttpURLConnection connection) throws OneDriveAPIException {
         super(connection);
     }
 
+    /**
+     * @since 3.6
+     */
+    public OneDriveResponse(OneDriveConnection connection) throws OneDriveAPIException {
+        super(connection);
+    }
+
     @Override
     public InputStream getContent() throws OneDriveAPIException {
         return getBody();
@@ -0,0 +1,216 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Keeps the last item metadata read from each URL with its eTag, so that reading it again sends a conditional request
+ * with {@code If-None-Match}: when the item didn't change the service answers 304 without body and the cached JSON is
+ * decoded instead of downloading and parsing the item again.
+ * <p>
+ * The cache holds at most the given number of URLs, the least recently used one is evicted first. It is set with
+ * {@link AbstractOneDriveAPI#setResponseCache(OneDriveResponseCache)} and must not be shared between API instances of
+ * different users, as entries are keyed by URL only.
+ * <p>
+ * Pre-authenticated URLs expire, so download URLs are stripped from the cached JSON and metadata served from the
+ * cache have no {@link OneDriveFile.Metadata#getDownloadUrl() download URL}. Metadata with expanded thumbnails, whose
+ * URLs are pre-authenticated too, are not cached.
+ *
+ * @since 3.6
+ */
+public class OneDriveResponseCache {
+
+    private static final Set<String> PRE_AUTHENTICATED_MEMBERS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("@microsoft.graph.downloadUrl", "@content.downloadUrl")));
+
+    private static final String THUMBNAILS = "thumbnails";
+
+    private final int maxEntries;
+
+    private final Map<String, CacheEntry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong revalidations = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries the maximum number of URLs kept
+     */
+    public OneDriveResponseCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        // Access order makes the map iterate from the least recently used entry
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > OneDriveResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of reads served from the cache after the service answered 304.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of reads which downloaded the item, because it wasn't cached or because it changed.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of conditional requests sent for cached items, whatever the service answered.
+     */
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Removes the entry of the given URL, for instance after updating the item.
+     */
+    public synchronized void invalidate(URL url) {
+        entries.remove(url.toString());
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Reads the JSON object at the given URL built from the template, revalidating the cached one if any, and decodes
+     * it.
+     */
+    <T> T get(OneDriveAPI api, URL url, URLTemplate template, Function<JsonObject, T> decoder)
+            throws OneDriveAPIException {
+        String key = url.toString();
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, url, "GET");
+        request.setTemplate(template);
+        if (entry != null) {
+            request.addHeader("If-None-Match", entry.eTag);
+            revalidations.incrementAndGet();
+        }
+        JsonObject json;
+        String eTag;
+        try {
+            OneDriveJsonResponse response = request.send();
+            json = response.getContent();
+            eTag = response.getHeaderField("ETag");
+        } catch (OneDriveAPIException e) {
+            if (entry != null && e.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                hits.incrementAndGet();
+                return decoder.apply(entry.json);
+            }
+            if (entry != null) {
+                invalidate(url);
+            }
+            throw e;
+        }
+        misses.incrementAndGet();
+        if (eTag == null) {
+            JsonValue value = json.get("eTag");
+            eTag = value != null && value.isString() ? value.asString() : null;
+        }
+        JsonObject cached = eTag == null ? null : toCached(json);
+        synchronized (this) {
+            if (cached == null) {
+                entries.remove(key);
+            } else {
+                entries.put(key, new CacheEntry(eTag, cached));
+            }
+        }
+        return decoder.apply(json);
+    }
+
+    /**
+     * Returns a copy of the JSON without pre-authenticated URLs, or null if it can't be cached.
+     */
+    private static JsonObject toCached(JsonObject json) {
+        if (json.get(THUMBNAILS) != null) {
+            return null;
+        }
+        JsonObject cached = new JsonObject();
+        for (JsonObject.Member member : json) {
+            if (!PRE_AUTHENTICATED_MEMBERS.contains(member.getName())) {
+                cached.add(member.getName(), member.getValue());
+            }
+        }
+        return cached;
+    }
+
+    private static final class CacheEntry {
+
+        final String eTag;
+
+        /** Metadata objects belong to the resource they were read from, the JSON is cached and decoded per read. */
+        final JsonObject json;
+
+        CacheEntry(String eTag, JsonObject json) {
+            this.eTag = eTag;
+            this.json = json;
+        }
+
+    }
+
+}
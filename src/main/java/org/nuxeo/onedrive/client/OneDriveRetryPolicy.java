@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a throttled request is sent again, see https://docs.microsoft.com/en-us/graph/throttling.
+ * <p>
+ * Requests answered with 429 or 503 are retried after the delay given by the {@code Retry-After} header, or else after
+ * a capped exponential backoff with jitter. A {@code Retry-After} longer than the configured maximum isn't waited
+ * for, the throttled response is returned as an error instead. Only idempotent methods are retried unless configured otherwise, and only
+ * requests whose body can be sent again: no body, a byte array or a file stream.
+ * <p>
+ * The settings of a policy can't change, it is shared by the requests of an API and counts their retries. Each
+ * {@link AbstractOneDriveAPI} has its own default policy, so that its counters only cover its requests.
+ * <p>
+ * Before 3.6 throttled requests weren't retried. The default policy retries them 3 times with a backoff from 1 to 8
+ * seconds, which delays a request by about 15 seconds at most unless the service asks for longer with
+ * {@code Retry-After}, up to 1 minute per retry. {@link #NONE} restores the previous behaviour.
+ *
+ * @since 3.6
+ */
+public class OneDriveRetryPolicy {
+
+    /**
+     * The default policy of unauthenticated requests and of {@link OneDriveAPI} implementations which don't provide
+     * one, its counters are shared by all of them.
+     */
+    public static final OneDriveRetryPolicy DEFAULT = new OneDriveRetryPolicy();
+
+    /** A policy which never retries. */
+    public static final OneDriveRetryPolicy NONE = new OneDriveRetryPolicy(0, 0, 0, false);
+
+    private static final long DEFAULT_MAX_RETRY_AFTER = 60 * 1000;
+
+    private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE")));
+
+    private final int maxRetries;
+
+    private final long baseDelay;
+
+    private final long maxDelay;
+
+    private final long maxRetryAfter;
+
+    private final boolean retryNonIdempotent;
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong exhausted = new AtomicLong();
+
+    /**
+     * Constructs the default policy: 3 retries of idempotent requests, backoff from 1 second up to 8 seconds,
+     * {@code Retry-After} honoured up to 1 minute.
+     */
+    public OneDriveRetryPolicy() {
+        this(3, 1000, 8 * 1000, false);
+    }
+
+    /**
+     * @param maxRetries how many times a request is sent again before its error is thrown
+     * @param baseDelay the backoff of the first retry in milliseconds, it doubles on each retry
+     * Constructs a policy which honours {@code Retry-After} up to 1 minute.
+     *
+     * @param maxRetries how many times a request is sent again before its error is thrown
+     * @param baseDelay the backoff of the first retry in milliseconds, it doubles on each retry
+     * @param maxDelay the maximum backoff in milliseconds
+     * @param retryNonIdempotent whether POST and PATCH requests are also retried
+     */
+    public OneDriveRetryPolicy(int maxRetries, long baseDelay, long maxDelay, boolean retryNonIdempotent) {
+        this(maxRetries, baseDelay, maxDelay, DEFAULT_MAX_RETRY_AFTER, retryNonIdempotent);
+    }
+
+    /**
+     * @param maxRetries how many times a request is sent again before its error is thrown
+     * @param baseDelay the backoff of the first retry in milliseconds, it doubles on each retry
+     * @param maxDelay the maximum backoff in milliseconds
+     * @param maxRetryAfter the longest {@code Retry-After} in milliseconds which is waited for, the throttled response
+     *            is returned as an error if the service asks for longer
+     * @param retryNonIdempotent whether POST and PATCH requests are also retried
+     */
+    public OneDriveRetryPolicy(int maxRetries, long baseDelay, long maxDelay, long maxRetryAfter,
+            boolean retryNonIdempotent) {
+        if (maxRetries < 0 || baseDelay < 0 || maxDelay < baseDelay || maxRetryAfter < 0) {
+            throw new IllegalArgumentException("Retries and delays must be positive, max delay at least base delay.");
+        }
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.maxRetryAfter = maxRetryAfter;
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getMaxRetryAfter() {
+        return maxRetryAfter;
+    }
+
+    /**
+     * Returns whether a response with the given code is a throttling the request may be retried for.
+     */
+    public boolean isRetryable(String method, int responseCode) {
+        return isThrottling(responseCode) && (retryNonIdempotent || IDEMPOTENT_METHODS.contains(method));
+    }
+
+    static boolean isThrottling(int responseCode) {
+        return responseCode == 429 || responseCode == 503;
+    }
+
+    /**
+     * Returns the delay in milliseconds before the given retry, counted from 0, or -1 if the service asks to wait
+     * longer than {@link #getMaxRetryAfter()} and the request shouldn't be retried.
+     *
+     * @param retryAfter the value of {@code Retry-After} header, in seconds or as an HTTP date, or null
+     */
+    public long getDelay(int retry, String retryAfter) {
+        long delay = parseRetryAfter(retryAfter);
+        if (delay >= 0) {
+            return delay <= maxRetryAfter ? delay : -1;
+        }
+        long backoff = baseDelay << Math.min(retry, 30);
+        if (backoff < 0 || backoff > maxDelay) {
+            backoff = maxDelay;
+        }
+        // Half of the backoff is random so that throttled clients don't retry all at once
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * Returns the delay in milliseconds given by a {@code Retry-After} header, or -1 if absent or unreadable.
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(), date).toMillis());
+            } catch (DateTimeParseException e2) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns how many times requests were retried with this policy.
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Returns how many throttled responses were returned as errors, because retries were exhausted or the request
+     * couldn't be retried.
+     */
+    public long getExhaustedCount() {
+        return exhausted.get();
+    }
+
+    void onRetry() {
+        retries.incrementAndGet();
+    }
+
+    void onExhausted() {
+        exhausted.incrementAndGet();
+    }
+
+}
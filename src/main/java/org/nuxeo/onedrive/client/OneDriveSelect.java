@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Item properties to return, sent as {@code select} parameter. Items which are not fully selected only have the
+ * selected members in their metadata, other getters return null or a default value.
+ * <p>
+ * The id and the file and folder facets are always selected, they are needed to build the metadata.
+ *
+ * @since 3.6
+ */
+public enum OneDriveSelect implements QueryStringCommaParameter {
+
+    ID("id"),
+
+    NAME("name"),
+
+    SIZE("size"),
+
+    ETAG("eTag"),
+
+    CTAG("cTag"),
+
+    PARENT_REFERENCE("parentReference"),
+
+    CREATED_BY("createdBy"),
+
+    CREATED_DATE_TIME("createdDateTime"),
+
+    LAST_MODIFIED_BY("lastModifiedBy"),
+
+    LAST_MODIFIED_DATE_TIME("lastModifiedDateTime"),
+
+    WEB_URL("webUrl"),
+
+    DESCRIPTION("description"),
+
+    DELETED("deleted"),
+
+    FILE("file"),
+
+    FOLDER("folder");
+
+    private String key;
+
+    OneDriveSelect(String key) {
+        this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the parameters to send for the given selection, an empty or null selection returns all properties.
+     */
+    static OneDriveSelect[] toParameters(Set<OneDriveSelect> selects) {
+        if (selects == null || selects.isEmpty()) {
+            return new OneDriveSelect[0];
+        }
+        EnumSet<OneDriveSelect> parameters = EnumSet.copyOf(selects);
+        parameters.add(ID);
+        parameters.add(FILE);
+        parameters.add(FOLDER);
+        return parameters.toArray(new OneDriveSelect[parameters.size()]);
+    }
+
+}
@@ -75,6 +75,7 @@ public class OneDriveThumbnail extends OneDriveResource {
             url = GET_THUMBNAIL_URL.build(getApi().getBaseURL(), itemId, thumbId, size.getKey());
         }
         OneDriveJsonRequest request = new OneDriveJsonRequest(getApi(), url, "GET");
+        request.setTemplate(isRoot() ? GET_THUMBNAIL_ROOT_URL : GET_THUMBNAIL_URL);
         OneDriveJsonResponse response = request.send();
         return new Metadata(response.getContent());
     }
@@ -87,6 +88,7 @@ public class OneDriveThumbnail extends OneDriveResource {
             url = GET_THUMBNAIL_CONTENT_URL.build(getApi().getBaseURL(), itemId, thumbId, size.getKey());
         }
         OneDriveRequest request = new OneDriveRequest(getApi(), url, "GET");
+        request.setTemplate(isRoot() ? GET_THUMBNAIL_CONTENT_ROOT_URL : GET_THUMBNAIL_CONTENT_URL);
         OneDriveResponse response = request.send();
         return response.getContent();
     }
@@ -41,13 +41,15 @@ public class OneDriveThumbnailSetIterator implements Iterator<OneDriveThumbnailS
     OneDriveThumbnailSetIterator(OneDriveAPI api) {
         this.api = Objects.requireNonNull(api);
         this.itemId = null;
-        this.jsonObjectIterator = new JsonObjectIterator(api, GET_THUMBNAILS_ROOT_URL.build(api.getBaseURL()));
+        this.jsonObjectIterator = new JsonObjectIterator(api, GET_THUMBNAILS_ROOT_URL.build(api.getBaseURL()),
+                GET_THUMBNAILS_ROOT_URL);
     }
 
     public OneDriveThumbnailSetIterator(OneDriveAPI api, String itemId) {
         this.api = Objects.requireNonNull(api);
         this.itemId = Objects.requireNonNull(itemId);
-        this.jsonObjectIterator = new JsonObjectIterator(api, GET_THUMBNAILS_URL.build(api.getBaseURL(), itemId));
+        this.jsonObjectIterator = new JsonObjectIterator(api, GET_THUMBNAILS_URL.build(api.getBaseURL(), itemId),
+                GET_THUMBNAILS_URL);
     }
 
     @Override
@@ -0,0 +1,43 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Opens the HTTP connections used by requests, implementations decide how connections are pooled and which protocol
+ * version is negotiated.
+ * <p>
+ * The default transport relies on {@link java.net.HttpURLConnection}, see {@link OneDriveURLConnectionTransport}. A
+ * transport is set on the API with {@link AbstractOneDriveAPI#setTransport(OneDriveTransport)} and must be thread
+ * safe.
+ *
+ * @since 3.6
+ */
+public interface OneDriveTransport {
+
+    /**
+     * Opens a connection for a single request, redirects must not be followed as they are handled by requests.
+     *
+     * @param timeout the connect and read timeout in milliseconds, 0 for the transport default
+     */
+    OneDriveConnection openConnection(URL url, String method, int timeout) throws IOException;
+
+}
@@ -0,0 +1,260 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Walks the tree below a folder, listing subfolders in parallel.
+ * <p>
+ * Each listed folder is a task of a work-stealing pool whose parallelism is the number of listings in flight. Workers
+ * go depth first on the subfolders they find while idle workers steal the oldest pending folders, which keeps the
+ * number of pending folders low on deep trees as well as on wide ones.
+ * <p>
+ * The visitor receives every item below the start folder, without the start folder itself. It is called concurrently
+ * from the workers and must be thread-safe.
+ *
+ * @since 3.6
+ */
+public class OneDriveTreeWalker {
+
+    private final OneDriveFolder folder;
+
+    private int concurrency = 4;
+
+    private int maxDepth = Integer.MAX_VALUE;
+
+    private Predicate<OneDriveFolder.Metadata> folderFilter = metadata -> true;
+
+    private int pageSize = OneDriveFolder.DEFAULT_PAGE_SIZE;
+
+    private Set<OneDriveSelect> selects;
+
+    private final AtomicLong visited = new AtomicLong();
+
+    private final AtomicLong listed = new AtomicLong();
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private volatile long startTime;
+
+    public OneDriveTreeWalker(OneDriveFolder folder) {
+        this.folder = Objects.requireNonNull(folder);
+    }
+
+    /**
+     * Sets how many folders are listed at the same time.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1.");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the depth of the deepest items to visit, children of the start folder are at depth 1.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1.");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets which folders are walked into, other folders are visited but their children are not listed.
+     */
+    public void setFolderFilter(Predicate<OneDriveFolder.Metadata> folderFilter) {
+        this.folderFilter = Objects.requireNonNull(folderFilter);
+    }
+
+    /**
+     * Sets how many children are requested per page when listing a folder.
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the properties of visited items, see {@link OneDriveSelect}.
+     */
+    public void setSelects(Set<OneDriveSelect> selects) {
+        this.selects = selects;
+    }
+
+    /**
+     * Returns how many items were visited so far.
+     */
+    public long getVisitedCount() {
+        return visited.get();
+    }
+
+    /**
+     * Returns how many folders were completely listed so far.
+     */
+    public long getListedCount() {
+        return listed.get();
+    }
+
+    /**
+     * Returns how many folders are waiting to be listed or being listed.
+     */
+    public long getQueueDepth() {
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of items visited per second since the walk started.
+     */
+    public double getCrawlRate() {
+        long start = startTime;
+        if (start == 0) {
+            return 0;
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        return visited.get() / seconds;
+    }
+
+    /**
+     * Walks the tree and returns once all items were visited. The walk stops at the first error of a listing or of
+     * the visitor, an {@link Error} is thrown again as is.
+     */
+    public void walk(Visitor visitor) throws OneDriveAPIException {
+        Objects.requireNonNull(visitor);
+        visited.set(0);
+        listed.set(0);
+        pending.set(1);
+        startTime = System.nanoTime();
+        Walk walk = new Walk(visitor);
+        ForkJoinPool pool = new ForkJoinPool(concurrency);
+        try {
+            pool.execute(new FolderTask(walk, folder, 0));
+            walk.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            walk.fail(e);
+        } finally {
+            pool.shutdownNow();
+        }
+        Throwable failure = walk.failure.get();
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure instanceof OneDriveAPIException) {
+            throw (OneDriveAPIException) failure;
+        } else if (failure instanceof OneDriveRuntimeException
+                && failure.getCause() instanceof OneDriveAPIException) {
+            throw (OneDriveAPIException) failure.getCause();
+        } else if (failure instanceof InterruptedException) {
+            throw new OneDriveAPIException("The walk was interrupted.", failure);
+        } else if (failure != null) {
+            throw new OneDriveAPIException("Couldn't walk the folder tree.", failure);
+        }
+    }
+
+    /**
+     * Receives the items of the tree.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * @param item the item, sparse if selects were set
+         * @param depth the depth of the item, children of the start folder are at depth 1
+         */
+        void visit(OneDriveItem.Metadata item, int depth) throws OneDriveAPIException;
+
+    }
+
+    private static class Walk {
+
+        final Visitor visitor;
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Walk(Visitor visitor) {
+            this.visitor = visitor;
+        }
+
+        void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+            done.countDown();
+        }
+
+        boolean isStopped() {
+            return failure.get() != null;
+        }
+
+    }
+
+    private class FolderTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Walk walk;
+
+        private final OneDriveFolder current;
+
+        private final int depth;
+
+        FolderTask(Walk walk, OneDriveFolder current, int depth) {
+            this.walk = walk;
+            this.current = current;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            try (OneDriveItemIterator children = current.iterator(pageSize, selects)) {
+                while (!walk.isStopped() && children.hasNext()) {
+                    OneDriveItem.Metadata child = children.next();
+                    walk.visitor.visit(child, depth + 1);
+                    visited.incrementAndGet();
+                    if (child.isFolder() && depth + 1 < maxDepth && folderFilter.test(child.asFolder())) {
+                        pending.incrementAndGet();
+                        // Forked tasks go to the deque of this worker, idle workers steal them
+                        new FolderTask(walk, child.asFolder().getResource(), depth + 1).fork();
+                    }
+                }
+                listed.incrementAndGet();
+            } catch (Throwable t) {
+                // Errors of the visitor too, the walk would otherwise wait for this folder forever
+                walk.fail(t);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    walk.done.countDown();
+                }
+            }
+        }
+
+    }
+
+}
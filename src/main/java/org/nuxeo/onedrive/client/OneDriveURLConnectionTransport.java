@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * The default transport, based on {@link HttpURLConnection}.
+ * <p>
+ * Connections are kept alive by the JDK, its pool is shared by the whole JVM and configured with the
+ * {@code http.keepAlive} and {@code http.maxConnections} system properties. Only HTTP/1.1 is supported.
+ *
+ * @since 3.6
+ */
+public class OneDriveURLConnectionTransport implements OneDriveTransport {
+
+    public static final OneDriveURLConnectionTransport INSTANCE = new OneDriveURLConnectionTransport();
+
+    @Override
+    public OneDriveConnection openConnection(URL url, String method, int timeout) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if ("PATCH".equals(method)) {
+            // HttpURLConnection doesn't support PATCH
+            connection.setRequestProperty("X-HTTP-Method-Override", "PATCH");
+            connection.setRequestMethod("POST");
+        } else {
+            connection.setRequestMethod(method);
+        }
+
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+
+        // Disable redirects on connection because we handle it manually
+        connection.setInstanceFollowRedirects(false);
+        return new Connection(connection);
+    }
+
+    static class Connection implements OneDriveConnection {
+
+        private final HttpURLConnection connection;
+
+        Connection(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void addRequestProperty(String key, String value) {
+            connection.addRequestProperty(key, value);
+        }
+
+        @Override
+        public long send(InputStream body, long length) throws IOException {
+            long written = 0;
+            if (body != null) {
+                // Stream the body, else HttpURLConnection buffers it entirely in memory to compute its length
+                if (length >= 0) {
+                    connection.setFixedLengthStreamingMode(length);
+                } else {
+                    connection.setChunkedStreamingMode(StreamCopier.BUFFER_SIZE);
+                }
+                connection.setDoOutput(true);
+                try (OutputStream output = connection.getOutputStream()) {
+                    written = StreamCopier.copy(body, output);
+                }
+            }
+            connection.connect();
+            return written;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return connection.getInputStream();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return connection.getErrorStream();
+        }
+
+        @Override
+        public void disconnect() {
+            connection.disconnect();
+        }
+
+    }
+
+}
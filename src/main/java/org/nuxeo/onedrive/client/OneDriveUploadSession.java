@@ -0,0 +1,146 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.ParseException;
+
+/**
+ * See documentation at https://dev.onedrive.com/items/upload_large_files.htm.
+ * <p>
+ * The upload url is pre-authenticated, requests sent to it don't carry the access token.
+ *
+ * @since 3.6
+ */
+public class OneDriveUploadSession extends OneDriveJsonObject {
+
+    /** Gives the transport and retry policy of requests, they are not authenticated. */
+    private final OneDriveAPI api;
+
+    private String uploadUrl;
+
+    private ZonedDateTime expirationDateTime;
+
+    /** Not initialized here, parsing happens in super constructor before field initializers. */
+    private List<String> nextExpectedRanges;
+
+    public OneDriveUploadSession(JsonObject json) {
+        this(null, json);
+    }
+
+    OneDriveUploadSession(OneDriveAPI api, JsonObject json) {
+        super(json);
+        this.api = api;
+    }
+
+    public String getUploadUrl() {
+        return uploadUrl;
+    }
+
+    public ZonedDateTime getExpirationDateTime() {
+        return expirationDateTime;
+    }
+
+    public List<String> getNextExpectedRanges() {
+        if (nextExpectedRanges == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(nextExpectedRanges);
+    }
+
+    /**
+     * Returns the first byte the service is waiting for, or -1 if the session doesn't expect more bytes.
+     */
+    public long getNextExpectedOffset() {
+        if (nextExpectedRanges == null || nextExpectedRanges.isEmpty()) {
+            return -1;
+        }
+        String range = nextExpectedRanges.get(0);
+        int dash = range.indexOf('-');
+        return Long.parseLong(dash == -1 ? range : range.substring(0, dash));
+    }
+
+    /**
+     * Gets the current status of the session from the service, to know which ranges were received.
+     */
+    public OneDriveUploadSession getStatus() throws OneDriveAPIException {
+        OneDriveJsonRequest request = new OneDriveJsonRequest(getURL(), "GET");
+        configure(request);
+        OneDriveJsonResponse response = request.send();
+        JsonObject status = response.getContent();
+        // Status doesn't always repeat the upload url
+        if (status.get("uploadUrl") == null) {
+            status.add("uploadUrl", uploadUrl);
+        }
+        return new OneDriveUploadSession(api, status);
+    }
+
+    /**
+     * Cancels the session, the service discards the bytes already received.
+     */
+    public void cancel() throws OneDriveAPIException {
+        OneDriveRequest request = new OneDriveRequest(getURL(), "DELETE");
+        configure(request);
+        request.send().close();
+    }
+
+    void configure(AbstractRequest<?> request) {
+        if (api != null) {
+            request.configure(api);
+        }
+    }
+
+    URL getURL() {
+        try {
+            return new URL(uploadUrl);
+        } catch (MalformedURLException e) {
+            throw new OneDriveRuntimeException("Upload url returned from OneDrive API is malformed.", e);
+        }
+    }
+
+    @Override
+    protected void parseMember(JsonObject.Member member) {
+        super.parseMember(member);
+        try {
+            JsonValue value = member.getValue();
+            String memberName = member.getName();
+            if ("uploadUrl".equals(memberName)) {
+                uploadUrl = value.asString();
+            } else if ("expirationDateTime".equals(memberName)) {
+                expirationDateTime = ZonedDateTime.parse(value.asString());
+            } else if ("nextExpectedRanges".equals(memberName)) {
+                nextExpectedRanges = new ArrayList<>();
+                for (JsonValue range : value.asArray()) {
+                    nextExpectedRanges.add(range.asString());
+                }
+            }
+        } catch (ParseException e) {
+            throw new OneDriveRuntimeException("Parse failed, maybe a bug in client.", e);
+        }
+    }
+
+}
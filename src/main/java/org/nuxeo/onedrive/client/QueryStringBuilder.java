@@ -32,6 +32,9 @@ class QueryStringBuilder {
 
     private Map<String, String> parameters = new HashMap<>();
 
+    /** The encoded query string, kept until a parameter changes. */
+    private String queryString;
+
     public QueryStringBuilder set(String key, int value) {
         return set(key, Integer.toString(value));
     }
@@ -46,6 +49,7 @@ class QueryStringBuilder {
 
     public QueryStringBuilder set(String key, String value) {
         parameters.put(key, value);
+        queryString = null;
         return this;
     }
 
@@ -59,6 +63,7 @@ class QueryStringBuilder {
                 builder.append(parameter.getKey());
             }
             this.parameters.put(key, builder.toString());
+            queryString = null;
         }
         return this;
     }
@@ -68,8 +73,11 @@ class QueryStringBuilder {
         if (parameters.isEmpty()) {
             return "";
         }
+        if (queryString != null) {
+            return queryString;
+        }
         try {
-            StringBuilder builder = new StringBuilder("?");
+            StringBuilder builder = new StringBuilder(32 * parameters.size()).append('?');
             for (Entry<String, String> entry : parameters.entrySet()) {
                 if (builder.length() != 1) {
                     builder.append("&");
@@ -78,7 +86,8 @@ class QueryStringBuilder {
                        .append("=")
                        .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8.name()));
             }
-            return builder.toString();
+            queryString = builder.toString();
+            return queryString;
         } catch (UnsupportedEncodingException e) {
             throw new OneDriveRuntimeException("Error during construction of query string.", e);
         }
@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Bulk copy between streams, used to send request bodies and to read response bodies.
+ *
+ * @since 3.6
+ */
+final class StreamCopier {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Copy buffers are reused per thread, a copy never calls back into another copy. */
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private StreamCopier() {
+        // Utility class
+    }
+
+    /**
+     * Returns the copy buffer of current thread, for callers which copy to a sink without stream API.
+     */
+    static byte[] getBuffer() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Copies the remaining bytes of input to output and returns the number of bytes copied. Streams are not closed.
+     */
+    static long copy(InputStream input, OutputStream output) throws IOException {
+        if (input instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) input).getChannel();
+            long count = 0;
+            if (output instanceof FileOutputStream) {
+                count = transfer(channel, ((FileOutputStream) output).getChannel());
+            }
+            // Pipes and devices report no size, they are read until end of stream
+            return count + copy(channel, output);
+        }
+        byte[] buffer = BUFFERS.get();
+        long count = 0;
+        int n;
+        while ((n = input.read(buffer)) != -1) {
+            output.write(buffer, 0, n);
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the channel through the cached native buffer of the JDK instead of allocating one on each read as
+     * {@link FileInputStream#read(byte[])} does for large arrays.
+     */
+    private static long copy(FileChannel channel, OutputStream output) throws IOException {
+        byte[] buffer = BUFFERS.get();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long count = 0;
+        int n;
+        while ((n = channel.read(byteBuffer)) != -1) {
+            output.write(buffer, 0, n);
+            byteBuffer.clear();
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Lets the OS move bytes between the two files without copying them into the Java heap.
+     */
+    private static long transfer(FileChannel source, FileChannel target) throws IOException {
+        long position = source.position();
+        long remaining = source.size() - position;
+        long count = 0;
+        while (count < remaining) {
+            long n = source.transferTo(position + count, remaining - count, target);
+            if (n <= 0) {
+                break;
+            }
+            count += n;
+        }
+        source.position(position + count);
+        return count;
+    }
+
+}
@@ -20,32 +20,89 @@ package org.nuxeo.onedrive.client;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Objects;
 
 /**
+ * Template of API urls whose {@code %s} placeholders are filled with path values. The template is split once into its
+ * literal parts, values are percent-encoded as path segments, slashes excepted so that a value can be a path.
+ *
  * @since 1.0
  */
 class URLTemplate {
 
     public static final URLTemplate EMPTY_TEMPLATE = new URLTemplate("");
 
-    private String template;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** Characters allowed in a path by RFC 3986: unreserved, sub-delims, ':', '@' and the segment separator. */
+    private static final BitSet PATH_CHARS = new BitSet(128);
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            PATH_CHARS.set(c);
+            PATH_CHARS.set(Character.toUpperCase(c));
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            PATH_CHARS.set(c);
+        }
+        for (char c : "-._~!$&'()*+,;=:@/".toCharArray()) {
+            PATH_CHARS.set(c);
+        }
+    }
+
+    private final String template;
+
+    /** Literal parts around the placeholders, there is one more part than placeholders. */
+    private final String[] parts;
 
     URLTemplate(String template) {
         this.template = Objects.requireNonNull(template);
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c != '%') {
+                part.append(c);
+            } else if (template.startsWith("%s", i)) {
+                parts.add(part.toString());
+                part.setLength(0);
+                i++;
+            } else if (template.startsWith("%%", i)) {
+                part.append('%');
+                i++;
+            } else {
+                throw new IllegalArgumentException("Only %s placeholders are supported: " + template);
+            }
+        }
+        parts.add(part.toString());
+        this.parts = parts.toArray(new String[parts.size()]);
     }
 
     URL build(String base, Object... values) {
-        String urlString = String.format(base + this.template, values);
-        try {
-            return new URL(urlString);
-        } catch (MalformedURLException e) {
-            throw new OneDriveRuntimeException("Template produced an invalid URL (maybe a bug in client).", e);
-        }
+        return build(base, null, values);
     }
 
     URL build(String base, QueryStringBuilder query, Object... values) {
-        String urlString = String.format(base + this.template, values) + query.toString();
+        if (values.length < parts.length - 1) {
+            throw new IllegalArgumentException(
+                    "Template " + template + " expects " + (parts.length - 1) + " values, got " + values.length);
+        }
+        String queryString = query == null ? "" : query.toString();
+        int length = base.length() + template.length() + queryString.length();
+        for (Object value : values) {
+            length += String.valueOf(value).length();
+        }
+        // Leaves some room for escapes so that the builder is rarely grown
+        StringBuilder builder = new StringBuilder(length + 16).append(base).append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            appendEncoded(builder, String.valueOf(values[i - 1]));
+            builder.append(parts[i]);
+        }
+        String urlString = builder.append(queryString).toString();
         try {
             return new URL(urlString);
         } catch (MalformedURLException e) {
@@ -53,4 +110,37 @@ class URLTemplate {
         }
     }
 
+    /**
+     * Returns the endpoint of the urls built from this template, that is the template itself.
+     */
+    String getEndpoint() {
+        return template;
+    }
+
+    /**
+     * Returns the endpoint of an url not built from a template, for instance a download url given by the service: its
+     * scheme and host.
+     */
+    static String getEndpoint(URL url) {
+        return url.getProtocol() + "://" + url.getAuthority();
+    }
+
+    /**
+     * Appends the value, percent-encoding the UTF-8 bytes of characters not allowed in a path.
+     */
+    static void appendEncoded(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 128 && PATH_CHARS.get(c)) {
+                builder.append(c);
+                continue;
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+            for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            i = end - 1;
+        }
+    }
+
 }
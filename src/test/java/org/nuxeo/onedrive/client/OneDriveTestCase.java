@@ -24,7 +24,9 @@ import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
+import java.io.ByteArrayInputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Ignore;
@@ -54,6 +56,8 @@ public class OneDriveTestCase {
 
         String jsonString = IOUtils.toString(getClass().getResource(jsonResponseFile));
         when(jsonResponse.getContent()).thenReturn(JsonObject.readFrom(jsonString));
+        byte[] jsonBytes = jsonString.getBytes(StandardCharsets.UTF_8);
+        when(jsonResponse.readPage()).thenAnswer(invocation -> new JsonPageReader(new ByteArrayInputStream(jsonBytes)));
     }
 
     protected void mockJsonRequest(URL url, String jsonResponseFile) throws Exception {
@@ -65,6 +69,8 @@ public class OneDriveTestCase {
 
         String jsonString = IOUtils.toString(getClass().getResource(jsonResponseFile));
         when(jsonResponse.getContent()).thenReturn(JsonObject.readFrom(jsonString));
+        byte[] jsonBytes = jsonString.getBytes(StandardCharsets.UTF_8);
+        when(jsonResponse.readPage()).thenAnswer(invocation -> new JsonPageReader(new ByteArrayInputStream(jsonBytes)));
     }
 
 }
@@ -0,0 +1,267 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.Headers;
+
+public class TestAbstractRequest extends OneDriveServerTestCase {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicReference<Headers> requestHeaders = new AtomicReference<>();
+
+    private final AtomicReference<byte[]> requestBody = new AtomicReference<>();
+
+    private byte[] upload(boolean knownLength) throws Exception {
+        handle("/upload", exchange -> {
+            requestHeaders.set(exchange.getRequestHeaders());
+            requestBody.set(readBody(exchange));
+            respond(exchange, 201, "{\"id\":\"1\"}");
+        });
+        byte[] content = new byte[1024 * 1024 + 3];
+        new Random(1).nextBytes(content);
+
+        URL url = new URL(api.getBaseURL() + "/upload");
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, url, "PUT", "application/octet-stream");
+        if (knownLength) {
+            request.setBody(new ByteArrayInputStream(content), content.length);
+        } else {
+            request.setBody(new ByteArrayInputStream(content));
+        }
+        try (OneDriveJsonResponse response = request.send()) {
+            assertEquals(201, response.getResponseCode());
+            assertEquals("1", response.getContent().get("id").asString());
+        }
+        return content;
+    }
+
+    @Test
+    public void testFixedLengthBody() throws Exception {
+        byte[] content = upload(true);
+        assertEquals(String.valueOf(content.length), requestHeaders.get().getFirst("Content-Length"));
+        assertNull(requestHeaders.get().getFirst("Transfer-Encoding"));
+        assertArrayEquals(content, requestBody.get());
+    }
+
+    @Test
+    public void testChunkedBody() throws Exception {
+        byte[] content = upload(false);
+        assertEquals("chunked", requestHeaders.get().getFirst("Transfer-Encoding"));
+        assertArrayEquals(content, requestBody.get());
+    }
+
+    @Test
+    public void testFileBodyReadThroughChannel() throws Exception {
+        handle("/upload", exchange -> {
+            requestBody.set(readBody(exchange));
+            respond(exchange, 201, "{\"id\":\"1\"}");
+        });
+        byte[] content = new byte[200 * 1000];
+        new Random(3).nextBytes(content);
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+
+        URL url = new URL(api.getBaseURL() + "/upload");
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, url, "PUT", "application/octet-stream");
+        try (FileInputStream body = new FileInputStream(file) {
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                throw new AssertionError("The file body must be read through its channel.");
+            }
+
+        }) {
+            request.setBody(body, content.length);
+            request.send().close();
+        }
+        assertArrayEquals(content, requestBody.get());
+    }
+
+    @Test
+    public void testSendAsync() throws Exception {
+        handle("/drive/items/", exchange -> {
+            String id = exchange.getRequestURI().getPath().replaceAll(".*/", "");
+            if ("MISSING".equals(id)) {
+                respond(exchange, 404, "{\"error\":{\"code\":\"itemNotFound\"}}");
+            } else {
+                respond(exchange, 200, "{\"id\":\"" + id + "\",\"name\":\"" + id + ".bin\",\"file\":{}}");
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<OneDriveFile.Metadata>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(new OneDriveFile(api, "ITEM" + i).getMetadataAsync(executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            for (int i = 0; i < 50; i++) {
+                assertEquals("ITEM" + i + ".bin", futures.get(i).get().getName());
+            }
+
+            try {
+                new OneDriveJsonRequest(api, new URL(api.getBaseURL() + "/drive/items/MISSING"), "GET")
+                        .sendAsync(executor).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof OneDriveAPIException);
+                assertEquals(404, ((OneDriveAPIException) e.getCause()).getResponseCode());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private OneDriveRetryPolicy throttle(int throttledResponses, String retryAfter, List<byte[]> bodies) {
+        AtomicInteger requests = new AtomicInteger();
+        handle("/throttled", exchange -> {
+            bodies.add(readBody(exchange));
+            if (requests.incrementAndGet() <= throttledResponses) {
+                if (retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", retryAfter);
+                }
+                respond(exchange, 429, "{\"error\":{\"code\":\"activityLimitReached\"}}");
+            } else {
+                respond(exchange, 200, "{\"id\":\"1\"}");
+            }
+        });
+        OneDriveRetryPolicy policy = new OneDriveRetryPolicy(3, 1, 10, false);
+        api.setRetryPolicy(policy);
+        return policy;
+    }
+
+    @Test
+    public void testRetryThrottledRequest() throws Exception {
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        OneDriveRetryPolicy policy = throttle(2, "0", bodies);
+        byte[] content = new byte[100 * 1000];
+        new Random(2).nextBytes(content);
+
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, new URL(api.getBaseURL() + "/throttled"), "PUT",
+                "application/octet-stream");
+        request.setBody(new ByteArrayInputStream(content), content.length);
+        try (OneDriveJsonResponse response = request.send()) {
+            assertEquals("1", response.getContent().get("id").asString());
+        }
+
+        assertEquals(2, request.getRetryCount());
+        assertEquals(2, policy.getRetryCount());
+        assertEquals(3, bodies.size());
+        // The body is sent again on each retry
+        for (byte[] body : bodies) {
+            assertArrayEquals(content, body);
+        }
+    }
+
+    @Test
+    public void testDefaultRetryPolicyPerAPI() {
+        OneDriveRetryPolicy policy = new OneDriveBasicAPI("ACCESS_TOKEN").getRetryPolicy();
+        assertEquals(3, policy.getMaxRetries());
+        // Each API counts its own retries
+        assertNotSame(policy, new OneDriveBasicAPI("ACCESS_TOKEN").getRetryPolicy());
+        assertNotSame(OneDriveRetryPolicy.DEFAULT, policy);
+    }
+
+    @Test
+    public void testNoRetryForNonIdempotentRequest() throws Exception {
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        OneDriveRetryPolicy policy = throttle(1, null, bodies);
+
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, new URL(api.getBaseURL() + "/throttled"), "POST");
+        request.setBody("{}");
+        try {
+            request.send();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(429, e.getResponseCode());
+        }
+        assertEquals(1, bodies.size());
+        assertEquals(0, policy.getRetryCount());
+        assertEquals(1, policy.getExhaustedCount());
+    }
+
+    @Test
+    public void testNoRetryBeyondMaxRetryAfter() throws Exception {
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        OneDriveRetryPolicy policy = throttle(1, "3600", bodies);
+
+        OneDriveJsonRequest request = new OneDriveJsonRequest(api, new URL(api.getBaseURL() + "/throttled"), "GET");
+        long start = System.nanoTime();
+        try {
+            request.send();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(429, e.getResponseCode());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(1, bodies.size());
+        assertEquals(0, policy.getRetryCount());
+        assertEquals(1, policy.getExhaustedCount());
+    }
+
+    @Test
+    public void testRetryAfter() {
+        OneDriveRetryPolicy policy = new OneDriveRetryPolicy(3, 1000, 8000, false);
+        assertEquals(7000, policy.getDelay(0, "7"));
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        long delay = policy.getDelay(0, date);
+        assertTrue(delay > 25 * 1000 && delay <= 30 * 1000);
+        // Longer than the default max of 1 minute
+        assertEquals(-1, policy.getDelay(0, "61"));
+        assertEquals(-1, new OneDriveRetryPolicy(3, 1000, 8000, 5000, false).getDelay(0, "7"));
+        // Backoff doubles from the base delay up to the max delay, half of it is random
+        for (int retry = 0; retry < 6; retry++) {
+            long backoff = Math.min(8000, 1000L << retry);
+            delay = policy.getDelay(retry, "not a delay");
+            assertTrue(delay >= backoff / 2 && delay <= backoff);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAbstractResponse extends OneDriveServerTestCase {
+
+    private byte[] content;
+
+    @Before
+    public void setUpContent() throws Exception {
+        content = new byte[512 * 1024];
+        new Random(3).nextBytes(content);
+        ByteArrayOutputStream gzipContent = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipContent)) {
+            gzip.write(content);
+        }
+        handle("/content", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            respond(exchange, 200, gzipContent.toByteArray(), "application/octet-stream");
+        });
+    }
+
+    private InputStream download() throws Exception {
+        OneDriveRequest request = new OneDriveRequest(api, new URL(api.getBaseURL() + "/content"), "GET");
+        return request.send().getContent();
+    }
+
+    @Test
+    public void testBulkRead() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream stream = download()) {
+            byte[] buffer = new byte[10000];
+            int n;
+            while ((n = stream.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, n);
+            }
+        }
+        assertArrayEquals(content, output.toByteArray());
+    }
+
+    @Test
+    public void testSkipAndTransfer() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream stream = download()) {
+            long skipped = 0;
+            while (skipped < 1000) {
+                skipped += stream.skip(1000 - skipped);
+            }
+            // InputStream#transferTo only exists since Java 9
+            Method transferTo = stream.getClass().getMethod("transferTo", OutputStream.class);
+            transferTo.setAccessible(true);
+            long transferred = (Long) transferTo.invoke(stream, output);
+            assertEquals(content.length - 1000, transferred);
+        }
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, content.length), output.toByteArray());
+    }
+
+}
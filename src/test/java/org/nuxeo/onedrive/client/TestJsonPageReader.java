@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.eclipsesource.json.JsonObject;
+
+public class TestJsonPageReader {
+
+    private static JsonPageReader reader(String json) throws IOException {
+        return new JsonPageReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testReadItemsOneByOne() throws Exception {
+        JsonPageReader reader = reader("{\"@odata.context\":\"ctx\", \"value\" : [ {\"id\":\"1\",\"size\":12345678901,"
+                + "\"file\":{\"hashes\":{}},\"tags\":[true,false,null,1.5e3]}, {\"name\":\"caf\\u00e9 \\\"\\/\\n\"} ],"
+                + "\"@odata.nextLink\":\"next\"}");
+        assertEquals("ctx", reader.getPage().get("@odata.context").asString());
+
+        JsonObject item = reader.nextItem();
+        assertEquals("1", item.get("id").asString());
+        assertEquals(12345678901L, item.get("size").asLong());
+        assertTrue(item.get("file").asObject().get("hashes").isObject());
+        assertEquals("[true,false,null,1.5e3]", item.get("tags").toString());
+        assertEquals("caf\u00e9 \"/\n", reader.nextItem().get("name").asString());
+        assertNull(reader.getPage().get("@odata.nextLink"));
+
+        assertNull(reader.nextItem());
+        assertEquals("next", reader.getPage().get("@odata.nextLink").asString());
+        assertNull(reader.getPage().get("value"));
+        assertNull(reader.nextItem());
+    }
+
+    @Test
+    public void testReadPageWithoutItems() throws Exception {
+        assertNull(reader("{\"value\":[]}").nextItem());
+        JsonPageReader reader = reader("{\"value\":null,\"@odata.deltaLink\":\"delta\"}");
+        assertNull(reader.nextItem());
+        assertEquals("delta", reader.getPage().get("@odata.deltaLink").asString());
+    }
+
+    @Test
+    public void testMalformedJson() throws Exception {
+        JsonPageReader reader = reader("{\"value\":[{\"id\":\"1\"},{\"id\":2");
+        reader.nextItem();
+        try {
+            reader.nextItem();
+            fail();
+        } catch (IOException e) {
+            assertEquals("Unexpected end of input at offset 28 of JSON response.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMalformedItem() throws Exception {
+        JsonPageReader reader = reader("{\"value\":[{\"id\":tru},{\"id\":\"2\"}]}");
+        try {
+            reader.nextItem();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Expected a valid value"));
+        }
+    }
+
+}
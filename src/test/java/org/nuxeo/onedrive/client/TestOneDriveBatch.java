@@ -0,0 +1,164 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+public class TestOneDriveBatch extends OneDriveServerTestCase {
+
+    /** The operations of each batch request, as "id method url dependsOn". */
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        handle("/$batch", exchange -> {
+            JsonObject body = JsonObject.readFrom(new String(readBody(exchange), StandardCharsets.UTF_8));
+            List<String> batch = new ArrayList<>();
+            List<JsonValue> responses = new ArrayList<>();
+            for (JsonValue value : body.get("requests").asArray()) {
+                JsonObject request = value.asObject();
+                String id = request.get("id").asString();
+                String method = request.get("method").asString();
+                String url = request.get("url").asString();
+                JsonValue dependsOn = request.get("dependsOn");
+                batch.add(id + " " + method + " " + url + " " + dependsOn);
+                JsonObject response = new JsonObject().add("id", id);
+                if (url.endsWith("/MISSING")) {
+                    response.add("status", 404).add("body", new JsonObject().add("error",
+                            new JsonObject().add("code", "itemNotFound")));
+                } else if ("DELETE".equals(method)) {
+                    response.add("status", 204);
+                } else if ("POST".equals(method)) {
+                    String name = request.get("body").asObject().get("name").asString();
+                    response.add("status", 201).add("body", new JsonObject().add("id", "NEW").add("name", name)
+                                                                           .add("folder", new JsonObject()));
+                } else {
+                    String itemId = url.replaceAll(".*/", "");
+                    response.add("status", 200).add("body", new JsonObject().add("id", itemId)
+                                                                           .add("name", itemId + ".bin")
+                                                                           .add("file", new JsonObject()));
+                }
+                responses.add(response);
+            }
+            batches.add(batch);
+            // The service answers in any order
+            Collections.reverse(responses);
+            JsonArray array = new JsonArray();
+            responses.forEach(array::add);
+            respond(exchange, 200, new JsonObject().add("responses", array).toString());
+        });
+    }
+
+    @Test
+    public void testGetMetadata() throws Exception {
+        OneDriveBatch batch = new OneDriveBatch(api);
+        List<CompletableFuture<OneDriveFile.Metadata>> futures = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            futures.add(batch.getMetadata(new OneDriveFile(api, "ITEM" + i)));
+        }
+        CompletableFuture<OneDriveFile.Metadata> missing = batch.getMetadata(new OneDriveFile(api, "MISSING"));
+
+        batch.execute();
+
+        assertEquals(3, batches.size());
+        assertEquals(20, batches.get(0).size());
+        assertEquals("1 GET /drive/items/ITEM0 null", batches.get(0).get(0));
+        for (int i = 0; i < 45; i++) {
+            assertEquals("ITEM" + i + ".bin", futures.get(i).get().getName());
+        }
+        try {
+            missing.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(404, ((OneDriveAPIException) e.getCause()).getResponseCode());
+        }
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void testDependentOperationsShareBatch() throws Exception {
+        OneDriveBatch batch = new OneDriveBatch(api);
+        for (int i = 0; i < 19; i++) {
+            batch.deleteItem(new OneDriveFile(api, "ITEM" + i));
+        }
+        OneDriveFolder parent = new OneDriveFolder(api, "PARENT");
+        CompletableFuture<OneDriveFolder.Metadata> folder = batch.createFolder(parent, false, "folder");
+        CompletableFuture<Void> delete = batch.deleteItem(new OneDriveFile(api, "OLD"));
+        batch.dependsOn(delete, folder);
+        CompletableFuture<OneDriveFile.Metadata> last = batch.getMetadata(new OneDriveFile(api, "LAST"));
+
+        batch.execute();
+
+        assertEquals(2, batches.size());
+        // The last operation fills the first batch, the dependent pair goes to the second one
+        assertEquals(20, batches.get(0).size());
+        assertEquals("22 GET /drive/items/LAST null", batches.get(0).get(19));
+        assertEquals(2, batches.get(1).size());
+        assertEquals("20 POST /drive/items/PARENT/children null", batches.get(1).get(0));
+        assertEquals("21 DELETE /drive/items/OLD [\"20\"]", batches.get(1).get(1));
+        assertEquals("folder", folder.get().getName());
+        assertTrue(folder.get().isFolder());
+        assertEquals("LAST.bin", last.get().getName());
+        delete.get();
+    }
+
+    @Test
+    public void testDependentOperationsMustFitInBatch() {
+        OneDriveBatch batch = new OneDriveBatch(api);
+        CompletableFuture<?> previous = batch.deleteItem(new OneDriveFile(api, "ITEM0"));
+        for (int i = 1; i < OneDriveBatch.MAX_REQUESTS; i++) {
+            CompletableFuture<?> next = batch.deleteItem(new OneDriveFile(api, "ITEM" + i));
+            batch.dependsOn(next, previous);
+            previous = next;
+        }
+        CompletableFuture<?> tooMany = batch.deleteItem(new OneDriveFile(api, "ITEM"));
+        try {
+            batch.dependsOn(tooMany, previous);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testServiceRoot() {
+        assertEquals("https://graph.microsoft.com/v1.0",
+                OneDriveBatch.getServiceRoot("https://graph.microsoft.com/v1.0/sites/SITE"));
+        assertEquals("https://graph.microsoft.com/v1.0",
+                OneDriveBatch.getServiceRoot("https://graph.microsoft.com/v1.0"));
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOneDriveDeltaSync extends OneDriveServerTestCase {
+
+    private final List<String> tokens = new ArrayList<>();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final MemoryStore store = new MemoryStore();
+
+    private OneDriveDeltaSync sync;
+
+    @Before
+    public void setUp() {
+        handle("/drive/items/ROOT/view.delta", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            String token = query == null ? "start" : query.substring(query.indexOf('=') + 1);
+            tokens.add(token);
+            String link = api.getBaseURL() + "/drive/items/ROOT/view.delta?token=";
+            if (failures.get() > 0 && !"start".equals(token)) {
+                failures.decrementAndGet();
+                respond(exchange, 500, "{}");
+            } else if ("start".equals(token)) {
+                respond(exchange, 200, "{\"value\":[" + item("a", false) + "," + item("b", false)
+                        + "],\"@odata.nextLink\":\"" + link + "p2\"}");
+            } else if ("p2".equals(token)) {
+                respond(exchange, 200, "{\"value\":[" + item("c", false) + "],\"@odata.deltaLink\":\"" + link
+                        + "d1\"}");
+            } else if ("d1".equals(token)) {
+                respond(exchange, 200, "{\"value\":[" + item("b", true) + "],\"@odata.deltaLink\":\"" + link
+                        + "d2\"}");
+            } else if ("d2".equals(token)) {
+                // A deletion without facets and a package, which is neither a file nor a folder
+                respond(exchange, 200, "{\"value\":[{\"id\":\"c\",\"deleted\":{}},"
+                        + "{\"id\":\"n\",\"name\":\"n\",\"package\":{\"type\":\"oneNote\"}}],"
+                        + "\"@odata.deltaLink\":\"" + link + "d3\"}");
+            } else {
+                respond(exchange, 410, "{\"error\":{\"code\":\"resyncRequired\"}}");
+            }
+        });
+        sync = new OneDriveDeltaSync(new OneDriveFolder(api, "ROOT"), store);
+    }
+
+    private static String item(String id, boolean deleted) {
+        return "{\"id\":\"" + id + "\",\"name\":\"" + id + "\",\"file\":{}" + (deleted ? ",\"deleted\":{}" : "") + "}";
+    }
+
+    @Test
+    public void testSyncRounds() throws Exception {
+        assertEquals(3, sync.sync());
+        assertEquals(3, store.items.size());
+        assertTrue(store.link.endsWith("token=d1"));
+        assertEquals(2, store.commits);
+
+        // Next round only costs the changes
+        assertEquals(1, sync.sync());
+        assertFalse(store.items.containsKey("b"));
+        assertTrue(store.link.endsWith("token=d2"));
+        assertEquals(3, tokens.size());
+    }
+
+    @Test
+    public void testDeletedItemWithoutFacet() throws Exception {
+        sync.sync();
+        sync.sync();
+        assertEquals(1, sync.sync());
+
+        assertEquals("[a]", store.items.keySet().toString());
+        assertTrue(store.link.endsWith("token=d3"));
+        assertEquals(4, store.commits);
+    }
+
+    @Test
+    public void testResumeFromCommittedPage() throws Exception {
+        failures.set(1);
+        try {
+            sync.sync();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(500, e.getResponseCode());
+        }
+        assertTrue(store.link.endsWith("token=p2"));
+        assertEquals(2, store.items.size());
+
+        sync.sync();
+
+        assertEquals("[start, p2, p2]", tokens.toString());
+        assertEquals(3, store.items.size());
+    }
+
+    @Test
+    public void testResyncWhenLinkExpired() throws Exception {
+        store.link = api.getBaseURL() + "/drive/items/ROOT/view.delta?token=expired";
+        store.items.put("old", null);
+
+        assertEquals(3, sync.sync());
+
+        assertEquals(1, store.resyncs);
+        assertEquals("[expired, start, p2]", tokens.toString());
+        assertEquals(3, store.items.size());
+        assertTrue(store.link.endsWith("token=d1"));
+    }
+
+    @Test
+    public void testScheduledRoundsGoOnAfterRuntimeException() throws Exception {
+        store.commitFailures = 1;
+        List<OneDriveAPIException> errors = new CopyOnWriteArrayList<>();
+        sync.setErrorHandler(errors::add);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ScheduledFuture<?> future = sync.start(executor, 10, TimeUnit.MILLISECONDS);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (store.commits < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(future.isDone());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(store.items.containsKey("a"));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getCause() instanceof IllegalStateException);
+    }
+
+    private static class MemoryStore implements OneDriveDeltaStore {
+
+        final Map<String, OneDriveItem.Metadata> items = new TreeMap<>();
+
+        volatile String link;
+
+        volatile int commits;
+
+        /** Number of next commits which fail. */
+        volatile int commitFailures;
+
+        int resyncs;
+
+        @Override
+        public String getLink() {
+            return link;
+        }
+
+        @Override
+        public void commit(List<OneDriveItem.Metadata> changes, String link, boolean complete) {
+            if (commitFailures > 0) {
+                commitFailures--;
+                throw new IllegalStateException("Store failure");
+            }
+            for (OneDriveItem.Metadata change : changes) {
+                if (change.isDeleted()) {
+                    items.remove(change.getId());
+                } else {
+                    items.put(change.getId(), change);
+                }
+            }
+            this.link = link;
+            commits++;
+        }
+
+        @Override
+        public void resync() {
+            items.clear();
+            resyncs++;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestOneDriveEvents extends OneDriveServerTestCase {
+
+    private static final String ITEM = "{\"id\":\"ITEM\",\"name\":\"file.bin\",\"file\":{}}";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        handle("/drive/items/FOLDER/children", exchange -> respond(exchange, 200,
+                "{\"value\":[" + ITEM + "," + ITEM + "],\"@odata.nextLink\":\"" + api.getBaseURL() + "/page2\"}"));
+        handle("/page2", exchange -> respond(exchange, 200, "{\"value\":[" + ITEM + "]}"));
+    }
+
+    private List<RecordedEvent> record(boolean enabled) throws Exception {
+        Path file = folder.getRoot().toPath().resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            if (enabled) {
+                recording.enable("org.nuxeo.onedrive.Request");
+                recording.enable("org.nuxeo.onedrive.Page");
+                recording.enable("org.nuxeo.onedrive.Transfer");
+            }
+            recording.start();
+            for (OneDriveItem.Metadata child : new OneDriveFolder(api, "FOLDER").getChildren()) {
+                assertEquals("file.bin", child.getName());
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file)
+                            .stream()
+                            .filter(event -> event.getEventType().getName().startsWith("org.nuxeo.onedrive."))
+                            .collect(Collectors.toList());
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        return events.stream()
+                     .filter(event -> event.getEventType().getName().equals(name))
+                     .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testEventsOfPages() throws Exception {
+        List<RecordedEvent> events = record(true);
+
+        List<RecordedEvent> requests = filter(events, "org.nuxeo.onedrive.Request");
+        assertEquals(2, requests.size());
+        assertEquals("GET", requests.get(0).getString("method"));
+        assertEquals("/drive/items/%s/children", requests.get(0).getString("endpoint"));
+        assertEquals(200, requests.get(0).getInt("status"));
+        assertEquals("http://localhost:" + server.getAddress().getPort(), requests.get(1).getString("endpoint"));
+
+        List<RecordedEvent> pages = filter(events, "org.nuxeo.onedrive.Page");
+        assertEquals(2, pages.size());
+        assertEquals("/drive/items/%s/children", pages.get(1).getString("endpoint"));
+        assertEquals(0, pages.get(0).getInt("page"));
+        assertEquals(2, pages.get(0).getInt("items"));
+        assertEquals(1, pages.get(1).getInt("items"));
+
+        List<RecordedEvent> transfers = filter(events, "org.nuxeo.onedrive.Transfer");
+        assertEquals(2, transfers.size());
+        assertEquals(OneDriveEvents.DOWNLOAD, transfers.get(0).getString("direction"));
+        assertTrue(transfers.get(0).getLong("bytes") > 2 * ITEM.length());
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        assertEquals(0, record(false).size());
+    }
+
+}
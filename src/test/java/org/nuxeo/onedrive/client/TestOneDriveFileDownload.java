@@ -0,0 +1,250 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+
+public class TestOneDriveFileDownload extends OneDriveServerTestCase {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private volatile byte[] content = new byte[1000 * 1000 + 7];
+
+    private volatile String cTag = "\"c:{ITEM},1\"";
+
+    /** The HTTP entity tag of the content, unrelated to the cTag of the item, or null to send none. */
+    private volatile String entityTag = "\"content-1\"";
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private volatile boolean acceptRanges = true;
+
+    /** Range and If-Range headers of ranged requests. */
+    private final List<String> requests = new ArrayList<>();
+
+    /** Ranged requests starting at this offset send half of their body then drop the connection. */
+    private volatile long dropAt = -1;
+
+    /** Content sent after the next ranged response. */
+    private volatile byte[] contentAfterRange;
+
+    /** Content sent once a connection was dropped. */
+    private volatile byte[] contentAfterDrop;
+
+    private Path target;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(5).nextBytes(content);
+        target = folder.getRoot().toPath().resolve("file.bin");
+
+        handle("/drive/items/ITEM", exchange -> respond(exchange, 200, "{\"id\":\"ITEM\",\"name\":\"file.bin\",\"size\":"
+                + content.length + ",\"cTag\":\"" + cTag.replace("\"", "\\\"") + "\",\"file\":{},"
+                + "\"@content.downloadUrl\":\"" + api.getBaseURL() + "/download\"}"));
+        handle("/download", this::download);
+    }
+
+    private void download(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        Matcher matcher = RANGE.matcher(range == null ? "" : range);
+        if (entityTag != null) {
+            exchange.getResponseHeaders().set("ETag", entityTag);
+        }
+        if (!acceptRanges || !matcher.matches() || ifRange != null && !ifRange.equals(entityTag)) {
+            respond(exchange, 200, content, "application/octet-stream");
+            return;
+        }
+        rangeRequests.incrementAndGet();
+        synchronized (requests) {
+            requests.add(range + " " + ifRange);
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = matcher.group(2).isEmpty() ? content.length - 1
+                : Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        if (start == dropAt) {
+            dropAt = -1;
+            drop(exchange, Arrays.copyOfRange(content, start, end + 1));
+            if (contentAfterDrop != null) {
+                content = contentAfterDrop;
+                cTag = "\"c:{ITEM},2\"";
+                entityTag = "\"content-2\"";
+            }
+            return;
+        }
+        byte[] body = Arrays.copyOfRange(content, start, end + 1);
+        if (contentAfterRange != null) {
+            // Modified in place, the metadata don't tell
+            content = contentAfterRange;
+            contentAfterRange = null;
+        }
+        respond(exchange, 206, body, "application/octet-stream");
+    }
+
+    private static void drop(HttpExchange exchange, byte[] body) {
+        try {
+            exchange.sendResponseHeaders(206, body.length);
+            OutputStream output = exchange.getResponseBody();
+            output.write(body, 0, body.length / 2);
+            output.flush();
+        } catch (IOException e) {
+            // The client went away first
+        } finally {
+            // Closing before the announced length is written drops the connection
+            exchange.close();
+        }
+    }
+
+    @Test
+    public void testParallelDownload() throws Exception {
+        AtomicLong progress = new AtomicLong();
+        OneDriveFileDownload download = new OneDriveFileDownload(new OneDriveFile(api, "ITEM"), target);
+        download.setSegmentSize(100 * 1000);
+        download.setConcurrency(3);
+        download.setProgressListener((transferred, total, bytesPerSecond) -> progress.set(transferred));
+
+        OneDriveFile.Metadata metadata = download.download();
+
+        assertEquals("file.bin", metadata.getName());
+        assertEquals(11, rangeRequests.get());
+        assertEquals(content.length, progress.get());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testDownloadWithoutRanges() throws Exception {
+        acceptRanges = false;
+        Files.write(target, new byte[2 * content.length]);
+        OneDriveFileDownload download = new OneDriveFileDownload(new OneDriveFile(api, "ITEM"), target);
+        download.setSegmentSize(300 * 1000);
+
+        download.download();
+
+        assertEquals(0, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testResumeAfterConnectionDrop() throws Exception {
+        dropAt = 0;
+        AtomicLong progress = new AtomicLong();
+        OneDriveFileDownload download = new OneDriveFileDownload(new OneDriveFile(api, "ITEM"), target);
+        download.setConcurrency(1);
+        download.setProgressListener((transferred, total, bytesPerSecond) -> progress.set(transferred));
+
+        download.download();
+
+        assertEquals(2, requests.size());
+        // The continuation is conditioned on the entity tag of the first response
+        assertEquals("bytes=0-" + (content.length - 1) + " null", requests.get(0));
+        assertEquals("bytes=" + content.length / 2 + "-" + (content.length - 1) + " " + entityTag, requests.get(1));
+        assertEquals(content.length, progress.get());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testRestartWhenContentChanged() throws Exception {
+        byte[] newContent = new byte[content.length / 3];
+        new Random(6).nextBytes(newContent);
+        contentAfterDrop = newContent;
+        dropAt = 0;
+        OneDriveFileDownload download = new OneDriveFileDownload(new OneDriveFile(api, "ITEM"), target);
+        download.setConcurrency(1);
+
+        download.download();
+
+        // The continuation is refused by If-Range, the new content is downloaded from the start
+        assertEquals(1, requests.size());
+        assertArrayEquals(newContent, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testDownloadWholeWithoutEntityTag() throws Exception {
+        entityTag = null;
+        byte[] newContent = new byte[content.length];
+        new Random(7).nextBytes(newContent);
+        contentAfterRange = newContent;
+        OneDriveFileDownload download = new OneDriveFileDownload(new OneDriveFile(api, "ITEM"), target);
+        download.setSegmentSize(300 * 1000);
+        download.setConcurrency(1);
+
+        download.download();
+
+        // Ranges can't be checked against each other, the content is downloaded in a single response
+        assertEquals(1, rangeRequests.get());
+        assertArrayEquals(newContent, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        Path checkpointFile = folder.getRoot().toPath().resolve("download.json");
+        dropAt = 300 * 1000;
+
+        OneDriveFileDownload download = new OneDriveFileDownload(new OneDriveFile(api, "ITEM"), target);
+        download.setSegmentSize(300 * 1000);
+        download.setConcurrency(2);
+        download.setMaxRetries(0);
+        download.setCheckpointFile(checkpointFile);
+        try {
+            download.download();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(-1, e.getResponseCode());
+        }
+        assertTrue(Files.exists(checkpointFile));
+        requests.clear();
+
+        download.download();
+
+        // Only the missing half of the dropped segment is requested again, segments stopped by the failure go on
+        assertTrue(requests.contains("bytes=450000-599999 " + entityTag));
+        assertFalse(requests.stream().anyMatch(request -> request.startsWith("bytes=300000-")));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestOneDriveFileUpload extends OneDriveServerTestCase {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[7 * OneDriveFileUpload.FRAGMENT_ALIGNMENT / 2];
+
+    private final byte[] received = new byte[content.length];
+
+    private final AtomicLong receivedLength = new AtomicLong();
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final List<String> ranges = new ArrayList<>();
+
+    /** Indexes of PUT requests which fail with a server error. */
+    private final Set<Integer> failures = ConcurrentHashMap.newKeySet();
+
+    private Path source;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(4).nextBytes(content);
+        source = folder.newFile().toPath();
+        Files.write(source, content);
+
+        handle("/drive/items/ITEM/createUploadSession", exchange -> {
+            sessions.incrementAndGet();
+            receivedLength.set(0);
+            String uploadUrl = api.getBaseURL() + "/session/" + sessions.get();
+            respond(exchange, 200, "{\"uploadUrl\":\"" + uploadUrl
+                    + "\",\"expirationDateTime\":\"2100-01-01T00:00:00Z\",\"nextExpectedRanges\":[\"0-\"]}");
+        });
+        handle("/session/", exchange -> {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 200, "{\"nextExpectedRanges\":[\"" + receivedLength.get() + "-\"]}");
+                return;
+            }
+            byte[] body = readBody(exchange);
+            String range = exchange.getRequestHeaders().getFirst("Content-Range");
+            synchronized (ranges) {
+                ranges.add(range);
+                if (failures.remove(ranges.size() - 1)) {
+                    respond(exchange, 500, "{}");
+                    return;
+                }
+            }
+            Matcher matcher = CONTENT_RANGE.matcher(range);
+            assertTrue(matcher.matches());
+            int start = Integer.parseInt(matcher.group(1));
+            int end = Integer.parseInt(matcher.group(2));
+            assertEquals(receivedLength.get(), start);
+            System.arraycopy(body, 0, received, start, body.length);
+            receivedLength.set(end + 1);
+            if (end + 1 == Integer.parseInt(matcher.group(3))) {
+                respond(exchange, 201, "{\"id\":\"ITEM\",\"name\":\"file.bin\",\"size\":" + (end + 1)
+                        + ",\"file\":{}}");
+            } else {
+                respond(exchange, 202, "{\"nextExpectedRanges\":[\"" + (end + 1) + "-\"]}");
+            }
+        });
+    }
+
+    private OneDriveFileUpload newUpload() {
+        OneDriveFileUpload upload = new OneDriveFileUpload(new OneDriveFile(api, "ITEM"), false, source);
+        upload.setFragmentSize(OneDriveFileUpload.FRAGMENT_ALIGNMENT + 1);
+        return upload;
+    }
+
+    @Test
+    public void testUploadInFragments() throws Exception {
+        AtomicLong progress = new AtomicLong();
+        OneDriveFileUpload upload = newUpload();
+        upload.setProgressListener((transferred, total, bytesPerSecond) -> progress.set(transferred));
+
+        OneDriveFile.Metadata metadata = upload.upload();
+
+        assertEquals("file.bin", metadata.getName());
+        assertEquals(content.length, metadata.getSize());
+        assertEquals(content.length, progress.get());
+        assertEquals(1, sessions.get());
+        int fragment = OneDriveFileUpload.FRAGMENT_ALIGNMENT;
+        assertEquals("bytes 0-" + (fragment - 1) + "/" + content.length, ranges.get(0));
+        assertEquals("bytes " + 3 * fragment + "-" + (content.length - 1) + "/" + content.length, ranges.get(3));
+        assertEquals(4, ranges.size());
+        assertArrayEquals(content, received);
+    }
+
+    @Test
+    public void testResumeAfterError() throws Exception {
+        failures.add(1);
+
+        newUpload().upload();
+
+        assertEquals(1, sessions.get());
+        assertEquals(5, ranges.size());
+        assertEquals(ranges.get(1), ranges.get(2));
+        assertArrayEquals(content, received);
+    }
+
+    @Test
+    public void testResumeFromStateFile() throws Exception {
+        Path stateFile = folder.getRoot().toPath().resolve("upload.json");
+        failures.add(2);
+
+        OneDriveFileUpload upload = newUpload();
+        upload.setStateFile(stateFile);
+        upload.setMaxResumes(0);
+        try {
+            upload.upload();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(500, e.getResponseCode());
+        }
+        assertTrue(Files.exists(stateFile));
+
+        upload = newUpload();
+        upload.setStateFile(stateFile);
+        upload.upload();
+
+        assertEquals(1, sessions.get());
+        assertEquals(5, ranges.size());
+        assertArrayEquals(content, received);
+        assertFalse(Files.exists(stateFile));
+    }
+
+}
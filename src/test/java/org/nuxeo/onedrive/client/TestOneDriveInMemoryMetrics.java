@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOneDriveInMemoryMetrics extends OneDriveServerTestCase {
+
+    private static final String ITEM = "{\"id\":\"ITEM\",\"name\":\"file.bin\",\"file\":{}}";
+
+    private final AtomicInteger throttles = new AtomicInteger();
+
+    private OneDriveInMemoryMetrics metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        metrics = new OneDriveInMemoryMetrics();
+        api.setMetrics(metrics);
+        api.setRetryPolicy(new OneDriveRetryPolicy(1, 1, 1, false));
+        handle("/drive/items/ITEM", exchange -> {
+            if (throttles.getAndDecrement() > 0) {
+                respond(exchange, 429, "{}");
+                return;
+            }
+            respond(exchange, 200, ITEM);
+        });
+        handle("/drive/items/FOLDER/children", exchange -> respond(exchange, 200,
+                "{\"value\":[" + ITEM + "],\"@odata.nextLink\":\"" + api.getBaseURL() + "/page2\"}"));
+        handle("/page2", exchange -> respond(exchange, 200, "{\"value\":[" + ITEM + "]}"));
+    }
+
+    @Test
+    public void testRecordPerTemplate() throws Exception {
+        new OneDriveFile(api, "ITEM").getMetadata();
+        new OneDriveFile(api, "ITEM").getMetadata();
+
+        OneDriveInMemoryMetrics.Endpoint endpoint = metrics.getEndpoint("GET", "/drive/items/%s");
+        assertEquals(2, endpoint.getRequestCount());
+        assertEquals(Long.valueOf(2), endpoint.getResponseCodeCounts().get(200));
+        assertEquals(2 * ITEM.length(), endpoint.getBytesReceived());
+        assertEquals(2, endpoint.getTotalLatency().getCount());
+        assertTrue(endpoint.getFirstByteLatency().getPercentile(50) > 0);
+        assertNull(metrics.getEndpoint("PATCH", "/drive/items/%s"));
+    }
+
+    @Test
+    public void testRecordPathCacheMissPerTemplate() throws Exception {
+        handle("/drive/root:/file.bin", exchange -> respond(exchange, 200, ITEM));
+        api.setPathCache(new OneDrivePathCache());
+
+        new OneDriveFile(api, null, "file.bin").getByPath();
+
+        assertEquals(1, metrics.getEndpoint("GET", "/drive/root:/%s").getRequestCount());
+        assertEquals(1, metrics.getEndpoints().get("GET").size());
+    }
+
+    @Test
+    public void testRecordBytesOfChunkedBody() throws Exception {
+        handle("/upload", exchange -> {
+            readBody(exchange);
+            respond(exchange, 200, ITEM);
+        });
+        OneDriveRequest request = new OneDriveRequest(api, new URL(api.getBaseURL() + "/upload"), "PUT");
+        // Without length the body is sent in chunks
+        request.setBody(new ByteArrayInputStream(new byte[1000]));
+        request.send().close();
+
+        String host = "http://localhost:" + server.getAddress().getPort();
+        assertEquals(1000, metrics.getEndpoint("PUT", host).getBytesSent());
+    }
+
+    @Test
+    public void testRecordRetries() throws Exception {
+        throttles.set(1);
+
+        new OneDriveFile(api, "ITEM").getMetadata();
+
+        OneDriveInMemoryMetrics.Endpoint endpoint = metrics.getEndpoint("GET", "/drive/items/%s");
+        assertEquals(2, endpoint.getRequestCount());
+        assertEquals(1, endpoint.getRetryCount());
+        assertEquals(Long.valueOf(1), endpoint.getResponseCodeCounts().get(429));
+        assertEquals(1, endpoint.getTotalLatency().getCount());
+    }
+
+    @Test
+    public void testRecordNextLinksByHost() throws Exception {
+        for (OneDriveItem.Metadata child : new OneDriveFolder(api, "FOLDER").getChildren()) {
+            assertEquals("file.bin", child.getName());
+        }
+
+        assertEquals(1, metrics.getEndpoint("GET", "/drive/items/%s/children").getRequestCount());
+        String host = "http://localhost:" + server.getAddress().getPort();
+        assertEquals(1, metrics.getEndpoint("GET", host).getRequestCount());
+        assertEquals(2, metrics.getEndpoints().get("GET").size());
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long value : new long[] { 0, 7, 8, 15, 16, 1000, 123456789, Long.MAX_VALUE }) {
+            int index = OneDriveInMemoryMetrics.Histogram.index(value);
+            long upper = OneDriveInMemoryMetrics.Histogram.upperBound(index);
+            assertTrue(value <= upper);
+            assertTrue(upper - value <= value / 8);
+        }
+        OneDriveInMemoryMetrics.Histogram histogram = new OneDriveInMemoryMetrics.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500, histogram.getMean(), 0);
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 50000 && median <= 50000 * 9 / 8);
+        assertTrue(histogram.getPercentile(100) >= 100000);
+    }
+
+}
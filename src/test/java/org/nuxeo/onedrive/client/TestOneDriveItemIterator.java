@@ -0,0 +1,166 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eclipsesource.json.JsonObject;
+
+public class TestOneDriveItemIterator extends OneDriveServerTestCase {
+
+    private static final int PAGES = 5;
+
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() {
+        handle("/drive/items/FOLDER/children", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            queries.add(query);
+            int page = query.contains("page=") ? Integer.parseInt(query.replaceAll(".*page=(\\d+).*", "$1")) : 0;
+            String nextLink = page + 1 < PAGES ? ",\"@odata.nextLink\":\"" + api.getBaseURL()
+                    + "/drive/items/FOLDER/children?page=" + (page + 1) + "\"" : "";
+            respond(exchange, 200, "{\"value\":[{\"id\":\"" + page + "-0\",\"file\":{}},{\"id\":\"" + page
+                    + "-1\",\"file\":{}}]" + nextLink + "}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private OneDriveItemIterator newIterator() {
+        return new OneDriveFolder(api, "FOLDER").iterator(2, null);
+    }
+
+    @Test
+    public void testPageSize() {
+        OneDriveItemIterator iterator = newIterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(2 * PAGES, count);
+        assertEquals("top=2", queries.get(0));
+        assertEquals(PAGES, queries.size());
+    }
+
+    @Test
+    public void testStreaming() {
+        int count = 0;
+        try (OneDriveItemIterator iterator = newIterator().setStreaming(true)) {
+            while (iterator.hasNext()) {
+                assertEquals(count / 2 + "-" + count % 2, iterator.next().getId());
+                count++;
+            }
+        }
+        assertEquals(2 * PAGES, count);
+        assertEquals(PAGES, queries.size());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        OneDriveItemIterator iterator = newIterator().setPrefetch(2, prefetchExecutor);
+
+        assertEquals("0-0", iterator.next().getId());
+        // Pages are fetched ahead while the first one is consumed
+        waitForQueries(3);
+
+        for (int i = 1; i < 2 * PAGES; i++) {
+            assertEquals(i / 2 + "-" + i % 2, iterator.next().getId());
+        }
+        assertFalse(iterator.hasNext());
+        assertEquals(PAGES, queries.size());
+    }
+
+    @Test
+    public void testCloseCancelsPrefetch() throws Exception {
+        OneDriveItemIterator iterator = newIterator().setPrefetch(1, prefetchExecutor);
+        iterator.next();
+        waitForQueries(2);
+
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        prefetchExecutor.shutdown();
+        assertTrue(prefetchExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, queries.size());
+    }
+
+    @Test
+    public void testStream() {
+        List<String> ids;
+        try (Stream<OneDriveItem.Metadata> stream = newIterator().stream()) {
+            ids = stream.parallel().map(OneDriveItem.Metadata::getId).collect(Collectors.toList());
+        }
+        assertEquals(2 * PAGES, ids.size());
+        assertEquals("0-0", ids.get(0));
+        assertEquals("4-1", ids.get(2 * PAGES - 1));
+    }
+
+    @Test
+    public void testSplitAtPageBoundaries() {
+        JsonObject json = JsonObject.readFrom("{\"id\":\"FOLDER\",\"folder\":{\"childCount\":10}}");
+        OneDriveFolder.Metadata metadata = new OneDriveFolder(api, "FOLDER").new Metadata(json);
+        Stream<OneDriveItem.Metadata> stream = metadata.getChildrenStream(null);
+        Spliterator<OneDriveItem.Metadata> spliterator = stream.spliterator();
+
+        // The child count is an estimate, it may be stale
+        assertEquals(10, spliterator.estimateSize());
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+        Spliterator<OneDriveItem.Metadata> page = spliterator.trySplit();
+        assertEquals(2, page.getExactSizeIfKnown());
+        assertEquals(8, spliterator.estimateSize());
+        assertEquals(1, queries.size());
+
+        stream.close();
+        assertTrue(page.tryAdvance(item -> assertEquals("0-0", item.getId())));
+        assertFalse(spliterator.tryAdvance(item -> fail()));
+        assertEquals(1, queries.size());
+    }
+
+    private void waitForQueries(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queries.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, queries.size());
+    }
+
+}
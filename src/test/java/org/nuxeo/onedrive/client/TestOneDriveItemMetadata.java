@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+import org.junit.Test;
+
+import com.eclipsesource.json.JsonObject;
+
+public class TestOneDriveItemMetadata {
+
+    private final OneDriveBasicAPI api = new OneDriveBasicAPI("ACCESS_TOKEN_TEST");
+
+    @Test
+    public void testDecodeMembersOnAccess() {
+        api.setLazyMetadata(true);
+        JsonObject json = JsonObject.readFrom("{\"thumbnailSets\":[{\"id\":\"0\"}],\"id\":\"ITEM\",\"name\":\"file.bin\","
+                + "\"createdDateTime\":\"2016-02-03T10:11:12Z\",\"lastModifiedDateTime\":\"not a date\","
+                + "\"createdBy\":{\"user\":{\"displayName\":\"Nuxeo User\"}},"
+                + "\"parentReference\":{\"id\":\"PARENT\",\"path\":\"/drive/root:\"},\"file\":{}}");
+        OneDriveFile.Metadata metadata = new OneDriveFile(api, "ITEM").new Metadata(json);
+
+        // Invalid members don't prevent reading the others
+        assertEquals("file.bin", metadata.getName());
+        assertEquals(ZonedDateTime.parse("2016-02-03T10:11:12Z"), metadata.getCreatedDateTime());
+        assertSame(metadata.getCreatedBy(), metadata.getCreatedBy());
+        assertEquals("Nuxeo User", metadata.getCreatedBy().getUser().getDisplayName());
+        assertEquals("PARENT", metadata.getParentReference().getId());
+        assertNull(metadata.getLastModifiedBy());
+        try {
+            metadata.getLastModifiedDateTime();
+            fail();
+        } catch (OneDriveRuntimeException e) {
+            // Decoded on access
+            assertTrue(e.getCause() instanceof DateTimeParseException);
+        }
+
+        // Thumbnail sets are kept and get the item id even when they come first
+        assertEquals(1, metadata.getThumbnailSets().size());
+        assertEquals("ITEM", metadata.getThumbnailSet().getItemId());
+    }
+
+    @Test
+    public void testDecodeMembersWhenBuilt() {
+        JsonObject json = JsonObject.readFrom("{\"thumbnailSets\":[{\"id\":\"0\"}],\"id\":\"ITEM\",\"name\":\"file.bin\","
+                + "\"createdDateTime\":\"2016-02-03T10:11:12Z\",\"file\":{}}");
+        OneDriveFile.Metadata metadata = new OneDriveFile(api, "ITEM").new Metadata(json);
+        assertEquals(ZonedDateTime.parse("2016-02-03T10:11:12Z"), metadata.getCreatedDateTime());
+        assertEquals("ITEM", metadata.getThumbnailSet().getItemId());
+
+        json = JsonObject.readFrom("{\"lastModifiedDateTime\":\"not a date\"}");
+        try {
+            new OneDriveFile(api, "ITEM").new Metadata(json);
+            fail();
+        } catch (OneDriveRuntimeException e) {
+            assertTrue(e.getCause() instanceof DateTimeParseException);
+        }
+    }
+
+    @Test
+    public void testRootHasNoParent() {
+        JsonObject json = JsonObject.readFrom("{\"id\":\"ROOT\",\"name\":\"root\",\"root\":{},\"folder\":{},"
+                + "\"parentReference\":{\"driveId\":\"DRIVE\"}}");
+        OneDriveFolder.Metadata metadata = new OneDriveFolder(api, "ROOT").new Metadata(json);
+
+        assertNull(metadata.getParentReference());
+    }
+
+}
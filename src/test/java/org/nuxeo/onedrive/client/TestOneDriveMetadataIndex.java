@@ -0,0 +1,180 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eclipsesource.json.JsonObject;
+
+public class TestOneDriveMetadataIndex extends OneDriveServerTestCase {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /** The drive root has a parent reference with only the drive id. */
+    private static final String ROOT = "{\"id\":\"ROOT\",\"name\":\"root\",\"root\":{},\"folder\":{},"
+            + "\"parentReference\":{\"driveId\":\"DRIVE\"}}";
+
+    private final AtomicInteger liveRequests = new AtomicInteger();
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve("index.jsonl");
+        handle("/drive/root/view.delta", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            String link = api.getBaseURL() + "/drive/root/view.delta?token=";
+            if (query == null) {
+                respond(exchange, 200, "{\"value\":[" + ROOT + ","
+                        + item("A", "ROOT", true) + "," + item("b.txt", "A", false) + "],\"@odata.nextLink\":\""
+                        + link + "p2\"}");
+            } else if (query.endsWith("p2")) {
+                String otherFile = item("b.txt", "B", false).replace("\"id\":\"b.txt\"", "\"id\":\"B2\"");
+                respond(exchange, 200, "{\"value\":[" + item("c.txt", "ROOT", false) + "," + item("B", "ROOT", true)
+                        + "," + otherFile + "],\"@odata.deltaLink\":\"" + link + "d1\"}");
+            } else {
+                respond(exchange, 200, "{\"value\":[{\"id\":\"c.txt\",\"file\":{},\"deleted\":{}}],"
+                        + "\"@odata.deltaLink\":\"" + link + "d2\"}");
+            }
+        });
+        handle("/drive/root:/", exchange -> {
+            liveRequests.incrementAndGet();
+            respond(exchange, 200, item("b.txt", "A", false));
+        });
+    }
+
+    /** Ids are the names, unless replaced. */
+    private static String item(String name, String parentId, boolean isFolder) {
+        return "{\"id\":\"" + name + "\",\"name\":\"" + name + "\",\"size\":3,\"parentReference\":{\"id\":\""
+                + parentId + "\"}," + (isFolder ? "\"folder\":{\"childCount\":1}" : "\"file\":{}") + "}";
+    }
+
+    private OneDriveMetadataIndex sync() throws Exception {
+        OneDriveMetadataIndex index = new OneDriveMetadataIndex(OneDriveFolder.getRoot(api), file);
+        new OneDriveDeltaSync(OneDriveFolder.getRoot(api), index).sync();
+        return index;
+    }
+
+    @Test
+    public void testLookups() throws Exception {
+        try (OneDriveMetadataIndex index = sync()) {
+            assertTrue(index.isFresh());
+            assertEquals(6, index.size());
+            assertEquals("b.txt", index.getByPath("/a/B.TXT").getName());
+            assertEquals("A", index.getByPath("/A").getId());
+            assertTrue(index.getByPath("A").isFolder());
+            assertNull(index.getByPath("/A/missing"));
+            assertEquals(3, index.getChildren("ROOT").size());
+            assertEquals(2, index.findByName("B.txt").size());
+            assertEquals(3, index.getById("c.txt").getSize());
+            assertEquals("A", index.getById("b.txt").getParentReference().getId());
+
+            new OneDriveDeltaSync(OneDriveFolder.getRoot(api), index).sync();
+
+            assertNull(index.getById("c.txt"));
+            assertEquals(2, index.getChildren("ROOT").size());
+            assertEquals(0, liveRequests.get());
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        sync().close();
+        // A commit torn by a crash
+        Files.write(file, "{\"delete\":\"A\"}\n{\"put\":{\"id\"".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (OneDriveMetadataIndex index = new OneDriveMetadataIndex(OneDriveFolder.getRoot(api), file)) {
+            assertTrue(index.isFresh());
+            assertTrue(index.getLink().endsWith("token=d1"));
+            assertEquals("b.txt", index.getByPath("/A/b.txt").getId());
+            index.commit(Collections.emptyList(), index.getLink(), true);
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertFalse(lines.stream().anyMatch(line -> line.startsWith("{\"delete\"")));
+    }
+
+    @Test
+    public void testRootWithParentReference() throws Exception {
+        String lines = "{\"put\":{\"id\":\"ROOT\",\"name\":\"root\",\"parentReference\":{},\"folder\":{}}}\n"
+                + "{\"put\":" + item("A", "ROOT", true) + "}\n"
+                + "{\"commit\":\"link\",\"complete\":true,\"time\":" + System.currentTimeMillis() + "}\n";
+        Files.write(file, lines.getBytes(StandardCharsets.UTF_8));
+
+        try (OneDriveMetadataIndex index = new OneDriveMetadataIndex(OneDriveFolder.getRoot(api), file)) {
+            assertEquals("A", index.getByPath("/A").getId());
+        }
+    }
+
+    @Test
+    public void testDeleteFolderContent() throws Exception {
+        try (OneDriveMetadataIndex index = sync()) {
+            JsonObject deleted = JsonObject.readFrom("{\"id\":\"A\",\"folder\":{},\"deleted\":{}}");
+            index.commit(Collections.singletonList(OneDriveItemIterator.toMetadata(api, deleted)), index.getLink(),
+                    true);
+
+            // Children of the deleted folder go with it
+            assertNull(index.getById("b.txt"));
+            assertEquals(1, index.findByName("b.txt").size());
+            assertEquals(4, index.size());
+        }
+    }
+
+    @Test
+    public void testDeleteWithoutFacet() throws Exception {
+        try (OneDriveMetadataIndex index = sync()) {
+            JsonObject deleted = JsonObject.readFrom("{\"id\":\"A\",\"deleted\":{}}");
+            index.commit(Collections.singletonList(new OneDriveDeletedItem(api, "A").new Metadata(deleted)),
+                    index.getLink(), true);
+
+            assertNull(index.getById("A"));
+            assertNull(index.getById("b.txt"));
+            assertEquals(4, index.size());
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals("{\"delete\":\"A\"}", lines.get(lines.size() - 2));
+    }
+
+    @Test
+    public void testFallBackWhenStale() throws Exception {
+        try (OneDriveMetadataIndex index = new OneDriveMetadataIndex(OneDriveFolder.getRoot(api), file)) {
+            assertFalse(index.isFresh());
+            assertEquals("b.txt", index.getByPath("/A/b.txt").getName());
+            assertEquals(1, liveRequests.get());
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+
+public class TestOneDriveOkHttpTransport extends OneDriveServerTestCase {
+
+    private final OneDriveOkHttpTransport transport = new OneDriveOkHttpTransport();
+
+    /** Method, method override and authorization of requests to the item. */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private final byte[] content = new byte[300 * 1000];
+
+    @Before
+    public void setUp() {
+        new Random(7).nextBytes(content);
+        api.setTransport(transport);
+
+        handle("/drive/items/ITEM", exchange -> {
+            requests.add(exchange.getRequestMethod() + " "
+                    + exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override") + " "
+                    + exchange.getRequestHeaders().getFirst("Authorization"));
+            String name = "file.bin";
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                name = new String(readBody(exchange), "UTF-8").replaceAll(".*\"name\":\"([^\"]*)\".*", "$1");
+            }
+            respond(exchange, 200, "{\"id\":\"ITEM\",\"name\":\"" + name + "\",\"file\":{}}");
+        });
+        handle("/drive/items/ITEM/content", exchange -> {
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                byte[] body = readBody(exchange);
+                respond(exchange, 201, "{\"id\":\"ITEM\",\"name\":\"file.bin\",\"size\":" + body.length
+                        + ",\"file\":{}}");
+            } else {
+                respond(exchange, 200, content, "application/octet-stream");
+            }
+        });
+        handle("/drive/items/MOVED", exchange -> {
+            exchange.getResponseHeaders().set("Location", api.getBaseURL() + "/drive/items/ITEM");
+            respond(exchange, 302, (String) null);
+        });
+    }
+
+    @After
+    public void closeTransport() {
+        transport.close();
+    }
+
+    @Test
+    public void testRequestsShareConnection() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals("file.bin", new OneDriveFile(api, "ITEM").getMetadata().getName());
+        }
+        assertEquals("GET null Bearer ACCESS_TOKEN_TEST", requests.get(0));
+        assertEquals(1, transport.getConnectionCount());
+    }
+
+    @Test
+    public void testCloseKeepsGivenClient() throws Exception {
+        OkHttpClient client = new OkHttpClient();
+        new OneDriveOkHttpTransport(client).close();
+
+        assertFalse(client.dispatcher().executorService().isShutdown());
+        client.dispatcher().executorService().shutdown();
+    }
+
+    @Test
+    public void testPatchIsSentAsIs() throws Exception {
+        OneDriveFile.Metadata metadata = new OneDriveFile(api, "ITEM").renameItem("renamed.bin", null);
+
+        assertEquals("renamed.bin", metadata.getName());
+        assertEquals("PATCH null Bearer ACCESS_TOKEN_TEST", requests.get(0));
+    }
+
+    @Test
+    public void testStreamedBodies() throws Exception {
+        OneDriveFile file = new OneDriveFile(api, "ITEM");
+        OneDriveFile.Metadata metadata = file.upload(false, content.length, new ByteArrayInputStream(content));
+        assertEquals(content.length, metadata.getSize());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream body = file.download()) {
+            StreamCopier.copy(body, output);
+        }
+        assertArrayEquals(content, output.toByteArray());
+    }
+
+    @Test
+    public void testRedirectAndError() throws Exception {
+        assertEquals("file.bin", new OneDriveFile(api, "MOVED").getMetadata().getName());
+        try {
+            new OneDriveFile(api, "MISSING").getMetadata();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(404, e.getResponseCode());
+        }
+        // Redirects are followed by requests, not by OkHttp
+        assertFalse(transport.getClient().followRedirects());
+    }
+
+}
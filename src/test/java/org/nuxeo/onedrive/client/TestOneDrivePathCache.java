@@ -0,0 +1,167 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOneDrivePathCache extends OneDriveServerTestCase {
+
+    /** Items by path, their id is the path without slashes. */
+    private final Map<String, String> names = new HashMap<>();
+
+    /** Parent paths of items moved by another client, by id. */
+    private final Map<String, String> movedParents = new HashMap<>();
+
+    private final List<String> requests = new ArrayList<>();
+
+    private OneDrivePathCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        names.put("Docs", "Docs");
+        names.put("Docs/report.txt", "report.txt");
+        cache = new OneDrivePathCache();
+        api.setPathCache(cache);
+        handle("/drive/", exchange -> {
+            String path = exchange.getRequestURI().getPath().substring("/v1.0/drive/".length());
+            synchronized (requests) {
+                requests.add(exchange.getRequestMethod() + " " + path);
+            }
+            String id;
+            String itemPath;
+            if (path.startsWith("root:/")) {
+                itemPath = path.substring("root:/".length());
+                id = itemPath.replace("/", "");
+            } else {
+                id = path.substring("items/".length());
+                itemPath = names.keySet()
+                                .stream()
+                                .filter(key -> key.replace("/", "").equals(id))
+                                .findFirst()
+                                .orElse(null);
+            }
+            String name = itemPath == null ? null : names.get(itemPath);
+            if ("PATCH".equals(exchange.getRequestMethod())) {
+                name = "renamed.txt";
+            }
+            if (name == null) {
+                respond(exchange, 404, "{}");
+                return;
+            }
+            int slash = itemPath.lastIndexOf('/');
+            String parentPath = movedParents.getOrDefault(id, slash < 0 ? "" : "/" + itemPath.substring(0, slash));
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"parentReference\":{\"path\":"
+                    + "\"/drive/root:" + parentPath + "\"},\"file\":{}}");
+        });
+    }
+
+    @Test
+    public void testReadKnownPathById() throws Exception {
+        new OneDriveFile(api, null, "Docs/report.txt").getByPath();
+        OneDriveFile.Metadata metadata = new OneDriveFile(api, null, "/docs/REPORT.txt").getByPath();
+
+        assertEquals("report.txt", metadata.getName());
+        assertEquals("GET root:/Docs/report.txt", requests.get(0));
+        assertEquals("GET items/Docsreport.txt", requests.get(1));
+        assertEquals("Docsreport.txt", cache.get("docs/report.txt"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void testInvalidateOnRename() throws Exception {
+        new OneDriveFile(api, null, "Docs/report.txt").getByPath();
+        new OneDriveFolder(api, "Docs").getByPath();
+
+        new OneDriveFile(api, "Docs").renameItem("other", null);
+
+        // The folder and the paths below it are forgotten
+        assertEquals(0, cache.size());
+        assertNull(cache.get("Docs/report.txt"));
+    }
+
+    @Test
+    public void testResolveAgainWhenChangedElsewhere() throws Exception {
+        new OneDriveFile(api, null, "Docs/report.txt").getByPath();
+        names.put("Docs/report.txt", "moved.txt");
+        names.put("Docs/report2.txt", "report.txt");
+
+        OneDriveFile.Metadata metadata = new OneDriveFile(api, null, "Docs/report.txt").getByPath();
+
+        assertEquals("moved.txt", metadata.getName());
+        assertEquals("GET root:/Docs/report.txt", requests.get(2));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testResolveAgainWhenAncestorRenamed() throws Exception {
+        new OneDriveFile(api, null, "Docs/report.txt").getByPath();
+        // Docs was renamed by another client, the file kept its name
+        movedParents.put("Docsreport.txt", "/Old%20Docs");
+
+        new OneDriveFile(api, null, "Docs/report.txt").getByPath();
+
+        assertEquals("GET items/Docsreport.txt", requests.get(1));
+        assertEquals("GET root:/Docs/report.txt", requests.get(2));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testMatchEncodedParentPath() throws Exception {
+        names.put("My Docs+/report.txt", "report.txt");
+        new OneDriveFile(api, null, "My Docs+/report.txt").getByPath();
+        movedParents.put("My Docs+report.txt", "/My%20Docs+");
+
+        new OneDriveFile(api, null, "my docs+/report.txt").getByPath();
+
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testExpireAndEvict() {
+        AtomicLong clock = new AtomicLong();
+        OneDrivePathCache cache = new OneDrivePathCache(2, 10, clock::get);
+        cache.put("a", "A");
+        clock.set(5);
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+
+        // b was the least recently used
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("/A/"));
+        clock.set(12);
+        assertNull(cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+}
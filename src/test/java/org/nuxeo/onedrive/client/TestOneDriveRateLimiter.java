@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestOneDriveRateLimiter extends OneDriveServerTestCase {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    /** Waits of delayed requests, in milliseconds. */
+    private final List<Long> waits = new CopyOnWriteArrayList<>();
+
+    private OneDriveRateLimiter newLimiter(double rate, int burst, long maxWait) {
+        return new OneDriveRateLimiter(rate, 1, 100, burst, maxWait, clock::get, nanos -> {
+            waits.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            clock.addAndGet(nanos);
+        });
+    }
+
+    @Test
+    public void testBurstThenDelay() throws Exception {
+        OneDriveRateLimiter limiter = newLimiter(10, 2, 1000);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        assertEquals(2, limiter.getPermittedCount());
+        assertEquals(2, limiter.getDelayedCount());
+        assertEquals(100L, (long) waits.get(0));
+        // The second waiting request queues behind the first one
+        assertEquals(100L, (long) waits.get(1));
+    }
+
+    @Test
+    public void testRejectLongWaits() throws Exception {
+        OneDriveRateLimiter limiter = newLimiter(1, 1, 500);
+        limiter.acquire();
+        try {
+            limiter.acquire();
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(1, limiter.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void testAdditiveIncreaseMultiplicativeDecrease() throws Exception {
+        OneDriveRateLimiter limiter = newLimiter(40, 10, 1000);
+        limiter.onResponse(429, -1);
+        // Throttling of concurrent requests only decreases the rate once
+        limiter.onResponse(429, -1);
+        assertEquals(20, limiter.getRate(), 0.001);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.onResponse(503, -1);
+        assertEquals(10, limiter.getRate(), 0.001);
+        assertEquals(3, limiter.getThrottledCount());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        limiter.onResponse(200, -1);
+        assertEquals(15, limiter.getRate(), 0.001);
+    }
+
+    @Test
+    public void testRetryAfterPausesAllRequests() throws Exception {
+        OneDriveRateLimiter limiter = newLimiter(10, 10, 5000);
+        limiter.onResponse(429, 2000);
+        limiter.acquire();
+        assertEquals(2000L, (long) waits.get(0));
+    }
+
+    @Test
+    public void testSharedByTenant() {
+        OneDriveRateLimiter limiter = OneDriveRateLimiter.forTenant("tenant-a");
+        try {
+            assertSame(limiter, OneDriveRateLimiter.forTenant("tenant-a"));
+            assertNotSame(limiter, OneDriveRateLimiter.forTenant("tenant-b"));
+        } finally {
+            assertSame(limiter, OneDriveRateLimiter.remove("tenant-a"));
+            OneDriveRateLimiter.remove("tenant-b");
+        }
+        assertNotSame(limiter, OneDriveRateLimiter.forTenant("tenant-a"));
+        OneDriveRateLimiter.remove("tenant-a");
+    }
+
+    @Test
+    public void testLimitRequests() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        handle("/limited", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                respond(exchange, 429, "{}");
+            } else {
+                respond(exchange, 200, "{\"id\":\"1\"}");
+            }
+        });
+        OneDriveRateLimiter limiter = new OneDriveRateLimiter(50, 1, 100, 10, 1000);
+        api.setRateLimiter(limiter);
+        api.setRetryPolicy(new OneDriveRetryPolicy(1, 1, 1, false));
+
+        new OneDriveJsonRequest(api, new URL(api.getBaseURL() + "/limited"), "GET").send().close();
+
+        assertEquals(2, limiter.getPermittedCount() + limiter.getDelayedCount());
+        assertEquals(1, limiter.getThrottledCount());
+        assertEquals(25, limiter.getRate(), 1);
+    }
+
+}
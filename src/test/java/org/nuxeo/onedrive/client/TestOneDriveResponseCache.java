@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOneDriveResponseCache extends OneDriveServerTestCase {
+
+    private final List<String> conditions = new ArrayList<>();
+
+    private volatile String name = "file.bin";
+
+    private volatile int version = 1;
+
+    private volatile String extraMembers = "";
+
+    private OneDriveResponseCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new OneDriveResponseCache(2);
+        api.setResponseCache(cache);
+        handle("/drive/items/", exchange -> {
+            String id = exchange.getRequestURI().getPath().substring("/v1.0/drive/items/".length());
+            String eTag = "\"{" + id + "}," + version + "\"";
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            synchronized (conditions) {
+                conditions.add(ifNoneMatch);
+            }
+            if (eTag.equals(ifNoneMatch)) {
+                respond(exchange, 304, (String) null);
+                return;
+            }
+            exchange.getResponseHeaders().set("ETag", eTag);
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"eTag\":\""
+                    + eTag.replace("\"", "\\\"") + "\",\"file\":{}" + extraMembers + "}");
+        });
+    }
+
+    @Test
+    public void testServeUnchangedMetadata() throws Exception {
+        OneDriveFile file = new OneDriveFile(api, "ITEM");
+        assertEquals("file.bin", file.getMetadata().getName());
+        name = "ignored.bin";
+
+        OneDriveFile.Metadata metadata = file.getMetadata();
+
+        assertEquals("file.bin", metadata.getName());
+        assertEquals("\"{ITEM},1\"", metadata.getETag());
+        assertNull(conditions.get(0));
+        assertEquals("\"{ITEM},1\"", conditions.get(1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    @Test
+    public void testDownloadChangedMetadata() throws Exception {
+        OneDriveFile file = new OneDriveFile(api, "ITEM");
+        file.getMetadata();
+        name = "renamed.bin";
+        version = 2;
+
+        assertEquals("renamed.bin", file.getMetadata().getName());
+        assertEquals("renamed.bin", file.getMetadata().getName());
+
+        assertEquals("\"{ITEM},2\"", conditions.get(2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getRevalidationCount());
+    }
+
+    @Test
+    public void testStripDownloadUrl() throws Exception {
+        extraMembers = ",\"@microsoft.graph.downloadUrl\":\"https://download/ITEM\"";
+        OneDriveFile file = new OneDriveFile(api, "ITEM");
+        assertEquals("https://download/ITEM", file.getMetadata().getDownloadUrl());
+
+        // The pre-authenticated URL may have expired, it isn't served from the cache
+        assertNull(file.getMetadata().getDownloadUrl());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testSkipThumbnails() throws Exception {
+        extraMembers = ",\"thumbnails\":[{\"id\":\"0\",\"small\":{\"url\":\"https://thumbnail/ITEM\"}}]";
+        OneDriveFile file = new OneDriveFile(api, "ITEM");
+        file.getMetadata();
+        file.getMetadata();
+
+        assertNull(conditions.get(1));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        new OneDriveFile(api, "A").getMetadata();
+        new OneDriveFile(api, "B").getMetadata();
+        new OneDriveFile(api, "A").getMetadata();
+        new OneDriveFile(api, "C").getMetadata();
+
+        // B was evicted, A is still revalidated
+        new OneDriveFile(api, "B").getMetadata();
+        new OneDriveFile(api, "C").getMetadata();
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertNull(conditions.get(4));
+        assertTrue(conditions.get(5).contains("{C}"));
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testWithoutCache() throws Exception {
+        api.setResponseCache(null);
+        OneDriveFile file = new OneDriveFile(api, "ITEM");
+        file.getMetadata();
+        file.getMetadata();
+
+        assertNull(conditions.get(1));
+        assertEquals(0, cache.getMissCount());
+    }
+
+}
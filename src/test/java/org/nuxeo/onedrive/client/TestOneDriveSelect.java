@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestOneDriveSelect extends OneDriveServerTestCase {
+
+    private final List<String> queries = new ArrayList<>();
+
+    @Test
+    public void testSelectChildren() throws Exception {
+        handle("/drive/items/FOLDER/children", exchange -> {
+            queries.add(exchange.getRequestURI().getRawQuery());
+            respond(exchange, 200, "{\"value\":[{\"id\":\"1\",\"name\":\"a.txt\",\"file\":{}},"
+                    + "{\"id\":\"2\",\"name\":\"b\",\"folder\":{}}]}");
+        });
+
+        Iterator<OneDriveItem.Metadata> children = new OneDriveFolder(api, "FOLDER").iterator(
+                EnumSet.of(OneDriveSelect.NAME), OneDriveExpand.THUMBNAILS);
+
+        OneDriveItem.Metadata child = children.next();
+        assertTrue(child.isFile());
+        assertEquals("a.txt", child.getName());
+        assertNull(child.getCreatedDateTime());
+        assertNull(child.getParentReference());
+        assertEquals(0, child.getSize());
+        assertTrue(children.next().isFolder());
+        assertFalse(children.hasNext());
+
+        // The id and the facets are always selected, expands are no longer dropped
+        String query = queries.get(0);
+        assertTrue(query, query.contains("select=id%2Cname%2Cfile%2Cfolder"));
+        assertTrue(query, query.contains("expand=thumbnails"));
+        assertTrue(query, query.contains("top=200"));
+    }
+
+    @Test
+    public void testSelectAll() throws Exception {
+        handle("/drive/items/ITEM", exchange -> {
+            queries.add(exchange.getRequestURI().getRawQuery());
+            respond(exchange, 200, "{\"id\":\"ITEM\",\"name\":\"a.txt\",\"file\":{}}");
+        });
+
+        new OneDriveFile(api, "ITEM").getMetadata(EnumSet.noneOf(OneDriveSelect.class));
+
+        assertNull(queries.get(0));
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOneDriveTreeWalker extends OneDriveServerTestCase {
+
+    /** Children of each folder, folders are upper case. */
+    private final Map<String, String[]> tree = new HashMap<>();
+
+    private final Set<String> visited = new ConcurrentSkipListSet<>();
+
+    @Before
+    public void setUp() {
+        tree.put("ROOT", new String[] { "A", "B", "f1" });
+        tree.put("A", new String[] { "AA", "a1", "a2" });
+        tree.put("AA", new String[] { "aa1" });
+        tree.put("B", new String[] { "b1" });
+        handle("/drive/items/", exchange -> {
+            String id = exchange.getRequestURI().getPath().split("/")[4];
+            String[] children = tree.get(id);
+            if (children == null) {
+                respond(exchange, 404, "{}");
+                return;
+            }
+            StringBuilder json = new StringBuilder("{\"value\":[");
+            for (int i = 0; i < children.length; i++) {
+                String child = children[i];
+                boolean isFolder = Character.isUpperCase(child.charAt(0));
+                json.append(i == 0 ? "" : ",")
+                    .append("{\"id\":\"").append(child).append("\",\"name\":\"").append(child).append("\",")
+                    .append(isFolder ? "\"folder\":{}}" : "\"file\":{}}");
+            }
+            respond(exchange, 200, json.append("]}").toString());
+        });
+    }
+
+    private OneDriveTreeWalker newWalker() {
+        OneDriveTreeWalker walker = new OneDriveTreeWalker(new OneDriveFolder(api, "ROOT"));
+        walker.setConcurrency(3);
+        return walker;
+    }
+
+    @Test
+    public void testWalk() throws Exception {
+        OneDriveTreeWalker walker = newWalker();
+
+        walker.walk((item, depth) -> visited.add(item.getId() + ":" + depth));
+
+        assertEquals(new TreeSet<>(Arrays.asList("A:1", "B:1", "f1:1", "AA:2", "a1:2", "a2:2", "b1:2", "aa1:3")),
+                visited);
+        assertEquals(8, walker.getVisitedCount());
+        assertEquals(4, walker.getListedCount());
+        assertEquals(0, walker.getQueueDepth());
+    }
+
+    @Test
+    public void testMaxDepthAndFilter() throws Exception {
+        OneDriveTreeWalker walker = newWalker();
+        walker.setMaxDepth(2);
+        walker.setFolderFilter(folder -> !"B".equals(folder.getName()));
+
+        walker.walk((item, depth) -> visited.add(item.getId()));
+
+        assertEquals(new TreeSet<>(Arrays.asList("A", "B", "f1", "AA", "a1", "a2")), visited);
+        assertEquals(2, walker.getListedCount());
+    }
+
+    @Test
+    public void testStopOnError() throws Exception {
+        tree.remove("AA");
+        try {
+            newWalker().walk((item, depth) -> visited.add(item.getId()));
+            fail();
+        } catch (OneDriveAPIException e) {
+            assertEquals(404, e.getResponseCode());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testStopOnVisitorError() throws Exception {
+        try {
+            newWalker().walk((item, depth) -> {
+                if ("a1".equals(item.getId())) {
+                    throw new AssertionError("visitor failure");
+                }
+            });
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("visitor failure", e.getMessage());
+        }
+    }
+
+}
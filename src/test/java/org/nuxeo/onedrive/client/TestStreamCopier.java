@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.onedrive.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestStreamCopier {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        byte[] content = randomBytes(3 * StreamCopier.BUFFER_SIZE + 17);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(content.length, StreamCopier.copy(new ByteArrayInputStream(content), output));
+        assertArrayEquals(content, output.toByteArray());
+    }
+
+    @Test
+    public void testCopyFromFile() throws Exception {
+        byte[] content = randomBytes(2 * StreamCopier.BUFFER_SIZE + 5);
+        File source = folder.newFile();
+        Files.write(source.toPath(), content);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FileInputStream input = new FileInputStream(source)) {
+            assertEquals(10, input.skip(10));
+            assertEquals(content.length - 10, StreamCopier.copy(input, output));
+            assertEquals(-1, input.read());
+        }
+        assertArrayEquals(Arrays.copyOfRange(content, 10, content.length), output.toByteArray());
+    }
+
+    @Test
+    public void testCopyFileToFile() throws Exception {
+        byte[] content = randomBytes(5 * StreamCopier.BUFFER_SIZE);
+        File source = folder.newFile();
+        File target = folder.newFile();
+        Files.write(source.toPath(), content);
+
+        try (FileInputStream input = new FileInputStream(source);
+                FileOutputStream output = new FileOutputStream(target)) {
+            assertEquals(content.length, StreamCopier.copy(input, output));
+        }
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+}
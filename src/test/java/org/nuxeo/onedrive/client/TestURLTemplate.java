@@ -55,4 +55,16 @@ public class TestURLTemplate extends OneDriveTestCase {
                                                                                  .toString());
     }
 
+    @Test
+    public void testBuildEncodesPathValues() {
+        URLTemplate template = new URLTemplate("/drive/items/%s:/%s");
+        assertEquals("https://graph.microsoft.com/v1.0/drive/items/A!1:/My%20Docs/%C3%A9t%C3%A9%20%231%3F.txt",
+                template.build(api.getBaseURL(), "A!1", "My Docs/\u00e9t\u00e9 #1?.txt").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildWithMissingValue() {
+        new URLTemplate("/drive/items/%s/permissions/%s").build(api.getBaseURL(), "ITEM");
+    }
+
 }